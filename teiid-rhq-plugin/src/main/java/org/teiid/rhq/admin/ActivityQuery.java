@@ -0,0 +1,300 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.teiid.rhq.plugin.util.PluginConstants.Operation;
+
+/**
+ * Filter and page arguments of the session and request list operations.
+ *
+ * The VDB is passed to the server with the list operation. Teiid has no
+ * system table for sessions or requests to query instead, so the session and
+ * age filters are applied by {@link #apply(List, Map, String)}
+ * in a single pass over the result. With a limit, only the rows of the
+ * requested page are kept while the result is sorted, in a bounded heap.
+ *
+ * All arguments are optional; without any, the whole list is returned.
+ */
+public class ActivityQuery {
+
+	public static final String USER_NAME = "user-name"; //$NON-NLS-1$
+	public static final String APPLICATION_NAME = "application-name"; //$NON-NLS-1$
+	public static final String CREATED_TIME = "created-time"; //$NON-NLS-1$
+	public static final String START_TIME = "start-time"; //$NON-NLS-1$
+	public static final String COMMAND = "command"; //$NON-NLS-1$
+	public static final String LAST_PING_TIME = "last-ping-time"; //$NON-NLS-1$
+	public static final String CLIENT_HOST_ADDRESS = "client-host-address"; //$NON-NLS-1$
+	public static final String IP_ADDRESS = "ip-address"; //$NON-NLS-1$
+
+	private final String vdbName;
+	private final String vdbVersion;
+	private final String userName;
+	private final String applicationName;
+	private final String clientHost;
+	private final long minIdleTime;
+	private final long minAge;
+	private final String commandFilter;
+	private final int offset;
+	private final int limit;
+	private final String sortBy;
+	private final boolean sortDescending;
+	private boolean userRequestsOnly;
+	private Set<Object> busySessions;
+
+	/**
+	 * @param values
+	 *            operation arguments, as set by the components from the
+	 *            operation parameters
+	 */
+	public ActivityQuery(Map<String, Object> values) {
+		this.vdbName = getString(values, Operation.Value.VDB_NAME);
+		this.vdbVersion = getString(values, Operation.Value.VDB_VERSION);
+		this.userName = getString(values, Operation.Value.USER_NAME_FILTER);
+		this.applicationName = getString(values, Operation.Value.APPLICATION_NAME_FILTER);
+		this.clientHost = getString(values, Operation.Value.CLIENT_HOST_FILTER);
+		this.minIdleTime = getLong(values, Operation.Value.MIN_IDLE_TIME);
+		this.minAge = getLong(values, Operation.Value.MIN_AGE);
+		this.commandFilter = getString(values, Operation.Value.COMMAND_FILTER);
+		this.offset = toInt(Math.max(0, getLong(values, Operation.Value.OFFSET)));
+		this.limit = toInt(getLong(values, Operation.Value.LIMIT));
+		this.sortBy = getString(values, Operation.Value.SORT_BY);
+		this.sortDescending = Boolean.TRUE.equals(values.get(Operation.Value.SORT_DESCENDING));
+	}
+
+	private static String getString(Map<String, Object> values, String name) {
+		Object value = values.get(name);
+		if (value == null || String.valueOf(value).trim().length() == 0) {
+			return null;
+		}
+		return String.valueOf(value).trim();
+	}
+
+	private static long getLong(Map<String, Object> values, String name) {
+		Object value = values.get(name);
+		if (value instanceof Number) {
+			return ((Number) value).longValue();
+		}
+		String string = getString(values, name);
+		return string == null ? 0 : Long.parseLong(string);
+	}
+
+	private static int toInt(long value) {
+		return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+	}
+
+	public String getVdbName() {
+		return vdbName;
+	}
+
+	public String getVdbVersion() {
+		return vdbVersion;
+	}
+
+	/**
+	 * Leave out source requests, so that each user request is listed once
+	 */
+	public void setUserRequestsOnly(boolean userRequestsOnly) {
+		this.userRequestsOnly = userRequestsOnly;
+	}
+
+	/**
+	 * @return true if sessions are selected by the time they have been idle
+	 */
+	public boolean hasIdleFilter() {
+		return minIdleTime > 0;
+	}
+
+	/**
+	 * Sessions running a request are not idle, whenever they last pinged
+	 *
+	 * @param busySessions
+	 *            ids of the sessions with requests, from
+	 *            <code>list-requests</code>
+	 */
+	public void setBusySessions(Set<Object> busySessions) {
+		this.busySessions = busySessions;
+	}
+
+	/**
+	 * @return true if the query selects by anything else than paging, as
+	 *         required to act on the selected entries
+	 */
+	public boolean hasCriteria() {
+		return vdbName != null || hasSessionFilter() || minAge > 0
+				|| commandFilter != null;
+	}
+
+	/**
+	 * @return true if the session of a request has to be known to filter it
+	 */
+	public boolean hasSessionFilter() {
+		return userName != null || applicationName != null
+				|| clientHost != null || minIdleTime > 0;
+	}
+
+	/**
+	 * Filter, sort and page a session or request list.
+	 *
+	 * @param rows
+	 *            <code>list-sessions</code> or <code>list-requests</code>
+	 *            result
+	 * @param sessions
+	 *            sessions by id, to filter requests by their session;
+	 *            null to filter the rows themselves, which then have to be
+	 *            sessions
+	 * @param timeField
+	 *            field holding the time the row started, for the minimum age
+	 * @return the rows of the requested page
+	 */
+	public List<Map<String, Object>> apply(List<Map<String, Object>> rows,
+			Map<Object, Map<String, Object>> sessions, String timeField) {
+		if (rows == null) {
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		// long, as offset and limit may add up past the largest int
+		long pageEnd = limit > 0 ? (long) offset + limit : Long.MAX_VALUE;
+
+		Comparator<Map<String, Object>> order = sortBy == null ? null : getOrder();
+		PriorityQueue<Map<String, Object>> heap = null;
+		if (order != null && limit > 0) {
+			// keeps the first pageEnd rows, the last of them on top
+			int capacity = (int) Math.min(pageEnd, rows.size()) + 1;
+			heap = new PriorityQueue<Map<String, Object>>(capacity, Collections.reverseOrder(order));
+		}
+		List<Map<String, Object>> matches = new ArrayList<Map<String, Object>>();
+
+		for (Map<String, Object> row : rows) {
+			if (!matches(row, sessions, timeField, now)) {
+				continue;
+			}
+			if (heap != null) {
+				heap.add(row);
+				if (heap.size() > pageEnd) {
+					heap.poll();
+				}
+			} else {
+				matches.add(row);
+				if (order == null && matches.size() >= pageEnd) {
+					// unsorted, the page is complete
+					break;
+				}
+			}
+		}
+
+		if (heap != null) {
+			matches.addAll(heap);
+		}
+		if (order != null) {
+			Collections.sort(matches, order);
+		}
+		if (offset >= matches.size()) {
+			return new ArrayList<Map<String, Object>>();
+		}
+		return new ArrayList<Map<String, Object>>(matches.subList(offset,
+				(int) Math.min(pageEnd, matches.size())));
+	}
+
+	private boolean matches(Map<String, Object> row,
+			Map<Object, Map<String, Object>> sessions, String timeField, long now) {
+		if (userRequestsOnly
+				&& Boolean.TRUE.equals(row.get(TranslatorActivity.SOURCE_REQUEST))) {
+			return false;
+		}
+		if (commandFilter != null) {
+			Object command = row.get(COMMAND);
+			if (command == null || String.valueOf(command).indexOf(commandFilter) < 0) {
+				return false;
+			}
+		}
+		if (minAge > 0) {
+			Object time = row.get(timeField);
+			if (!(time instanceof Number) || now - ((Number) time).longValue() < minAge) {
+				return false;
+			}
+		}
+		if (!hasSessionFilter()) {
+			return true;
+		}
+		Map<String, Object> session = sessions == null ? row : sessions.get(row
+				.get(VdbActivityIndex.SESSION_ID));
+		if (session == null) {
+			return false;
+		}
+		if (userName != null && !userName.equals(DataRoleActivity.getUser(session))
+				&& !userName.equals(session.get(USER_NAME))) {
+			return false;
+		}
+		if (applicationName != null
+				&& !applicationName.equals(session.get(APPLICATION_NAME))) {
+			return false;
+		}
+		if (clientHost != null && !clientHost.equals(session.get(CLIENT_HOST_ADDRESS))
+				&& !clientHost.equals(session.get(IP_ADDRESS))) {
+			return false;
+		}
+		if (minIdleTime > 0) {
+			if (busySessions != null
+					&& busySessions.contains(session.get(VdbActivityIndex.SESSION_ID))) {
+				return false;
+			}
+			// idle since the last ping, or since it was created without one
+			Object lastPing = session.get(LAST_PING_TIME);
+			if (!(lastPing instanceof Number)) {
+				lastPing = session.get(CREATED_TIME);
+			}
+			if (!(lastPing instanceof Number)
+					|| now - ((Number) lastPing).longValue() < minIdleTime) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Comparator<Map<String, Object>> getOrder() {
+		final String field = sortBy;
+		final int sign = sortDescending ? -1 : 1;
+		return new Comparator<Map<String, Object>>() {
+			public int compare(Map<String, Object> o1, Map<String, Object> o2) {
+				Object v1 = o1.get(field);
+				Object v2 = o2.get(field);
+				// rows without the field go last
+				if (v1 == null || v2 == null) {
+					return v1 == v2 ? 0 : (v1 == null ? 1 : -1);
+				}
+				if (v1 instanceof Number && v2 instanceof Number) {
+					return sign * Double.compare(((Number) v1).doubleValue(), ((Number) v2).doubleValue());
+				}
+				return sign * String.valueOf(v1).compareTo(String.valueOf(v2));
+			}
+		};
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.rhq.modules.plugins.jbossas7.ASConnection;
+import org.rhq.modules.plugins.jbossas7.json.CompositeOperation;
+import org.rhq.modules.plugins.jbossas7.json.Operation;
+import org.rhq.modules.plugins.jbossas7.json.Result;
+
+/**
+ * Sends a batch of independent management operations, such as cancelling
+ * many requests, to the server as one {@link CompositeOperation}. The steps
+ * do not roll back when one of them fails, and the outcome of every step is
+ * returned.
+ */
+public class BulkOperation {
+
+	public static final String OUTCOME = "outcome"; //$NON-NLS-1$
+	public static final String FAILURE_DESCRIPTION = "failure-description"; //$NON-NLS-1$
+
+	/**
+	 * @return the result of each step, in the order of the steps. A step
+	 *         without a result of its own gets the failure of the whole
+	 *         operation.
+	 */
+	public static List<Result> execute(ASConnection connection,
+			List<Operation> steps) {
+		List<Result> results = new ArrayList<Result>(steps.size());
+		if (steps.isEmpty()) {
+			return results;
+		}
+		CompositeOperation cop = new CompositeOperation();
+		for (Operation op : steps) {
+			cop.addStep(op);
+		}
+
+		// The steps are independent; one failing step must not undo the others
+		Map<String, Object> headers = new LinkedHashMap<String, Object>();
+		headers.put(ManagementSnapshot.ROLLBACK_ON_RUNTIME_FAILURE, Boolean.FALSE);
+		cop.addAdditionalProperty(ManagementSnapshot.OPERATION_HEADERS, headers);
+
+		Result result = connection.execute(cop);
+		Map<String, Object> stepResults = result != null
+				&& result.getResult() instanceof Map ? (Map<String, Object>) result
+				.getResult() : null;
+		for (int i = 0; i < steps.size(); i++) {
+			Object step = stepResults == null ? null : stepResults
+					.get(ManagementSnapshot.STEP + (i + 1));
+			if (step instanceof Map) {
+				results.add(ManagementSnapshot.getStepResult((Map<String, Object>) step));
+			} else {
+				Result failed = new Result();
+				failed.setOutcome("failed"); //$NON-NLS-1$
+				failed.setFailureDescription(result == null ? "No response" //$NON-NLS-1$
+						: result.getFailureDescription());
+				results.add(failed);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * @return a report row with the given fields, and the outcome of the step
+	 */
+	public static Map<String, Object> getReportRow(Map<String, Object> fields,
+			Result result) {
+		Map<String, Object> row = new LinkedHashMap<String, Object>(fields);
+		row.put(OUTCOME, result.isSuccess() ? ManagementSnapshot.SUCCESS
+				: "failed"); //$NON-NLS-1$
+		row.put(FAILURE_DESCRIPTION, result.getFailureDescription());
+		return row;
+	}
+
+}
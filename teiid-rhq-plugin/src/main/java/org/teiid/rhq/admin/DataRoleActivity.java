@@ -0,0 +1,199 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.teiid.rhq.plugin.DataRoleComponent;
+import org.teiid.rhq.plugin.VDBComponent;
+import org.teiid.rhq.plugin.util.PluginConstants.Operation;
+
+/**
+ * Sessions and requests of one VDB version attributed to its data roles,
+ * computed from the <code>get-vdb</code> result and a {@link VdbActivityIndex}
+ * without any DMR call of its own.
+ *
+ * The values are approximate. Mapped role names are JAAS roles or groups, but
+ * the session list does not carry the roles of its user, and neither the
+ * session nor the security domain can be asked for them over DMR. So a
+ * session is attributed to every <code>any-authenticated</code> role, and to
+ * every role with a mapped role name equal to the session's user name,
+ * without its security domain. This only matches deployments that map one
+ * principal per tenant; sessions that get a role through a group or JAAS role
+ * are missed.
+ *
+ * Instances are immutable once built.
+ */
+public class DataRoleActivity {
+
+	public static final String USER_NAME = "user-name"; //$NON-NLS-1$
+
+	private final long timestamp;
+
+	private final Map<String, Integer> sessionCounts = new HashMap<String, Integer>();
+	private final Map<String, Integer> requestCounts = new HashMap<String, Integer>();
+	private final Map<String, Double> requestRates = new HashMap<String, Double>();
+	private final boolean hasRates;
+
+	// user requests seen by this build, to find the new ones in the next
+	private final Set<String> requestKeys = new HashSet<String>();
+
+	/**
+	 * @param vdbMap
+	 *            <code>get-vdb</code> result
+	 * @param index
+	 *            sessions and requests by VDB
+	 * @param previous
+	 *            the previous build for the same VDB, for the rates; may be
+	 *            null
+	 */
+	public DataRoleActivity(Map<String, Object> vdbMap, String vdbName,
+			String vdbVersion, VdbActivityIndex index, DataRoleActivity previous) {
+		this.timestamp = index.getTimestamp();
+
+		List<String> anyAuthenticatedRoles = new ArrayList<String>();
+		Map<String, List<String>> rolesByMappedName = new HashMap<String, List<String>>();
+		List<Map<String, Object>> policies = vdbMap == null ? null
+				: (List<Map<String, Object>>) vdbMap.get(VDBComponent.DATA_POLICIES);
+		if (policies != null) {
+			for (Map<String, Object> policy : policies) {
+				String role = (String) policy.get(DataRoleComponent.POLICY_NAME);
+				if (Boolean.TRUE.equals(policy.get(DataRoleComponent.ANY_AUTHENTICATED))) {
+					anyAuthenticatedRoles.add(role);
+				}
+				List<String> mappedRoleNames = (List<String>) policy
+						.get(DataRoleComponent.MAPPED_ROLE_NAMES);
+				if (mappedRoleNames == null) {
+					continue;
+				}
+				for (String mappedRoleName : mappedRoleNames) {
+					List<String> roles = rolesByMappedName.get(mappedRoleName);
+					if (roles == null) {
+						roles = new ArrayList<String>();
+						rolesByMappedName.put(mappedRoleName, roles);
+					}
+					roles.add(role);
+				}
+			}
+		}
+
+		Map<Object, Set<String>> rolesBySession = new HashMap<Object, Set<String>>();
+		for (Map<String, Object> session : index.getSessions(vdbName, vdbVersion)) {
+			Set<String> roles = new HashSet<String>(anyAuthenticatedRoles);
+			List<String> mapped = rolesByMappedName.get(getUser(session));
+			if (mapped != null) {
+				roles.addAll(mapped);
+			}
+			rolesBySession.put(session.get(VdbActivityIndex.SESSION_ID), roles);
+			for (String role : roles) {
+				increment(sessionCounts, role);
+			}
+		}
+
+		Map<String, Integer> newRequests = new HashMap<String, Integer>();
+		for (Map<String, Object> request : index.getRequests(vdbName, vdbVersion)) {
+			if (Boolean.TRUE.equals(request.get(TranslatorActivity.SOURCE_REQUEST))) {
+				continue;
+			}
+			Set<String> roles = rolesBySession.get(request
+					.get(VdbActivityIndex.SESSION_ID));
+			if (roles == null || roles.isEmpty()) {
+				continue;
+			}
+			String key = request.get(VdbActivityIndex.SESSION_ID) + "." //$NON-NLS-1$
+					+ request.get(Operation.Value.REQUEST_ID);
+			requestKeys.add(key);
+			boolean isNew = previous != null && !previous.requestKeys.contains(key);
+			for (String role : roles) {
+				increment(requestCounts, role);
+				if (isNew) {
+					increment(newRequests, role);
+				}
+			}
+		}
+
+		this.hasRates = previous != null && timestamp > previous.timestamp;
+		if (hasRates) {
+			for (Map.Entry<String, Integer> entry : newRequests.entrySet()) {
+				requestRates.put(entry.getKey(), Double.valueOf(entry.getValue()
+						.doubleValue() * 1000 / (timestamp - previous.timestamp)));
+			}
+		}
+	}
+
+	/**
+	 * @return the user name of the session without its security domain
+	 */
+	static String getUser(Map<String, Object> session) {
+		String user = (String) session.get(USER_NAME);
+		if (user == null) {
+			return null;
+		}
+		int index = user.lastIndexOf('@');
+		return index < 0 ? user : user.substring(0, index);
+	}
+
+	private static void increment(Map<String, Integer> map, String key) {
+		Integer value = map.get(key);
+		map.put(key, Integer.valueOf(value == null ? 1 : value.intValue() + 1));
+	}
+
+	/**
+	 * @return the time of the {@link VdbActivityIndex} this was built from
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public int getSessionCount(String role) {
+		Integer count = sessionCounts.get(role);
+		return count == null ? 0 : count.intValue();
+	}
+
+	/**
+	 * @return the number of user requests, source requests excluded, running
+	 *         in the sessions of the role
+	 */
+	public int getRequestCount(String role) {
+		Integer count = requestCounts.get(role);
+		return count == null ? 0 : count.intValue();
+	}
+
+	/**
+	 * @return the number of user requests per second started in the sessions
+	 *         of the role since the previous build, or null on the first
+	 *         build
+	 */
+	public Double getRequestRate(String role) {
+		if (!hasRates) {
+			return null;
+		}
+		Double rate = requestRates.get(role);
+		return rate == null ? Double.valueOf(0) : rate;
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+/**
+ * A histogram of non-negative long values with log-linear buckets, in the
+ * style of HdrHistogram: values below 32 have a bucket of their own, and
+ * every power of two above that is split into 16 equal sub-buckets. Any
+ * recorded value is reported within about 6% of its true value, from a fixed
+ * array of counters, whatever the range of the values.
+ *
+ * Not thread safe.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+
+	private final long[] counts = new long[SUB_BUCKETS * 64];
+	private long count;
+	private long max;
+
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts[getIndex(value)]++;
+		count++;
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return the highest value of the bucket holding the given percentile,
+	 *         never more than the maximum recorded value; 0 if nothing was
+	 *         recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long total = 0;
+		for (int i = 0; i < counts.length; i++) {
+			total += counts[i];
+			if (total >= target) {
+				return Math.min(getHighestValue(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return an independent copy of this histogram
+	 */
+	public LatencyHistogram copy() {
+		LatencyHistogram copy = new LatencyHistogram();
+		System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+		copy.count = count;
+		copy.max = max;
+		return copy;
+	}
+
+	/**
+	 * @param previous
+	 *            an earlier copy of this histogram
+	 * @return the values recorded since the earlier copy. Their maximum is
+	 *         the highest value of the highest bucket that changed, so it may
+	 *         be overstated by the width of that bucket.
+	 */
+	public LatencyHistogram subtract(LatencyHistogram previous) {
+		LatencyHistogram difference = new LatencyHistogram();
+		for (int i = 0; i < counts.length; i++) {
+			long changed = counts[i] - previous.counts[i];
+			if (changed > 0) {
+				difference.counts[i] = changed;
+				difference.count += changed;
+				difference.max = Math.min(getHighestValue(i), max);
+			}
+		}
+		return difference;
+	}
+
+	static int getIndex(long value) {
+		if (value < LINEAR_LIMIT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		return SUB_BUCKETS * shift + (int) (value >>> shift);
+	}
+
+	static long getHighestValue(int index) {
+		if (index < LINEAR_LIMIT) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long subBucket = index - SUB_BUCKETS * shift;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+}
@@ -0,0 +1,352 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.codehaus.jackson.JsonNode;
+import org.rhq.modules.plugins.jbossas7.ASConnection;
+import org.rhq.modules.plugins.jbossas7.json.CompositeOperation;
+import org.rhq.modules.plugins.jbossas7.json.Result;
+import org.teiid.rhq.plugin.VDBComponent;
+import org.teiid.rhq.plugin.util.DmrUtil;
+import org.teiid.rhq.plugin.util.PluginConstants;
+import org.teiid.rhq.plugin.util.PluginConstants.ComponentType.Platform;
+
+/**
+ * Holds the results of the DMR operations issued against the Teiid subsystem
+ * during a single metric collection cycle. Each distinct operation (name plus
+ * arguments) is executed at most once, no matter how many metrics are served
+ * from it. Concurrent requests for the same operation wait on the first one.
+ *
+ * Operations may also be queued with {@link #prefetch(String, Map)} and sent
+ * together as a single {@link CompositeOperation} with
+ * {@link #executePending()}, so that all of them cost one round trip.
+ *
+ * A snapshot is meant to be created at the start of a collection cycle and
+ * discarded at the end of it.
+ */
+public class ManagementSnapshot implements PluginConstants {
+
+	private static final Log LOG = LogFactory
+			.getLog(PluginConstants.DEFAULT_LOGGER_CATEGORY);
+
+	static final String STEP = "step-"; //$NON-NLS-1$
+	static final String OUTCOME = "outcome"; //$NON-NLS-1$
+	static final String RESULT = "result"; //$NON-NLS-1$
+	static final String SUCCESS = "success"; //$NON-NLS-1$
+	static final String FAILURE_DESCRIPTION = "failure-description"; //$NON-NLS-1$
+	static final String OPERATION_HEADERS = "operation-headers"; //$NON-NLS-1$
+	static final String ROLLBACK_ON_RUNTIME_FAILURE = "rollback-on-runtime-failure"; //$NON-NLS-1$
+
+	private final ASConnection connection;
+
+	private final VdbCache vdbCache;
+
+	private final long timestamp = System.currentTimeMillis();
+
+	private final ConcurrentMap<String, FutureTask<Result>> results = new ConcurrentHashMap<String, FutureTask<Result>>();
+
+	private final ConcurrentMap<String, Integer> counts = new ConcurrentHashMap<String, Integer>();
+
+	private final Map<String, org.rhq.modules.plugins.jbossas7.json.Operation> pending = new LinkedHashMap<String, org.rhq.modules.plugins.jbossas7.json.Operation>();
+
+	public ManagementSnapshot(ASConnection connection) {
+		this(connection, null);
+	}
+
+	/**
+	 * @param connection
+	 * @param vdbCache
+	 *            cache used for <code>get-vdb</code> results, may be null
+	 */
+	public ManagementSnapshot(ASConnection connection, VdbCache vdbCache) {
+		this.connection = connection;
+		this.vdbCache = vdbCache;
+	}
+
+	public ASConnection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * @return the time in milliseconds at which this snapshot was created,
+	 *         which identifies its collection cycle
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Execute the named operation against the Teiid subsystem, or return the
+	 * result of an earlier execution of the same operation in this snapshot.
+	 *
+	 * @param operationName
+	 * @param additionalProperties
+	 *            operation arguments, may be null
+	 * @return the {@link Result} of the operation
+	 */
+	public Result execute(final String operationName,
+			final Map<String, Object> additionalProperties) {
+		String key = getKey(operationName, additionalProperties);
+		FutureTask<Result> task = results.get(key);
+		if (task == null) {
+			FutureTask<Result> newTask = new FutureTask<Result>(
+					new Callable<Result>() {
+						public Result call() throws Exception {
+							return TeiidModuleView.executeOperation(connection,
+									operationName, DmrUtil.getTeiidAddress(),
+									additionalProperties);
+						}
+					});
+			task = results.putIfAbsent(key, newTask);
+			if (task == null) {
+				task = newTask;
+				newTask.run();
+			}
+		}
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Queue an operation to be sent with the next {@link #executePending()}.
+	 * Operations already present in this snapshot are ignored.
+	 *
+	 * @param operationName
+	 * @param additionalProperties
+	 *            operation arguments, may be null
+	 */
+	public synchronized void prefetch(String operationName,
+			Map<String, Object> additionalProperties) {
+		String key = getKey(operationName, additionalProperties);
+		if (results.containsKey(key) || pending.containsKey(key)) {
+			return;
+		}
+		org.rhq.modules.plugins.jbossas7.json.Operation op = new org.rhq.modules.plugins.jbossas7.json.Operation(
+				operationName, DmrUtil.getTeiidAddress());
+		if (additionalProperties != null) {
+			op.setAdditionalProperties(additionalProperties);
+		}
+		pending.put(key, op);
+	}
+
+	/**
+	 * Send all queued operations to the server as one
+	 * {@link CompositeOperation} and record each step result in this
+	 * snapshot. Steps that did not produce a result are left out, so a later
+	 * {@link #execute(String, Map)} of the same operation goes to the server
+	 * on its own.
+	 */
+	public synchronized void executePending() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		List<String> keys = new ArrayList<String>(pending.keySet());
+		CompositeOperation cop = new CompositeOperation();
+		for (org.rhq.modules.plugins.jbossas7.json.Operation op : pending.values()) {
+			cop.addStep(op);
+		}
+		pending.clear();
+
+		// Read-only steps; one failing step must not discard the others
+		Map<String, Object> headers = new LinkedHashMap<String, Object>();
+		headers.put(ROLLBACK_ON_RUNTIME_FAILURE, Boolean.FALSE);
+		cop.addAdditionalProperty(OPERATION_HEADERS, headers);
+
+		Result result = connection.execute(cop);
+		if (result == null || !(result.getResult() instanceof Map)) {
+			LOG.debug("Composite metric request returned no step results: " //$NON-NLS-1$
+					+ (result == null ? null : result.getFailureDescription()));
+			return;
+		}
+
+		Map<String, Object> steps = (Map<String, Object>) result.getResult();
+		for (int i = 0; i < keys.size(); i++) {
+			Object step = steps.get(STEP + (i + 1));
+			if (!(step instanceof Map)) {
+				continue;
+			}
+			final Result stepResult = getStepResult((Map<String, Object>) step);
+			FutureTask<Result> task = new FutureTask<Result>(
+					new Callable<Result>() {
+						public Result call() throws Exception {
+							return stepResult;
+						}
+					});
+			task.run();
+			results.putIfAbsent(keys.get(i), task);
+		}
+	}
+
+	/**
+	 * @return the result of one step of a composite operation
+	 */
+	static Result getStepResult(Map<String, Object> stepMap) {
+		Result stepResult = new Result();
+		stepResult.setOutcome((String) stepMap.get(OUTCOME));
+		stepResult.setResult(stepMap.get(RESULT));
+		Object failure = stepMap.get(FAILURE_DESCRIPTION);
+		if (failure != null) {
+			stepResult.setFailureDescription(failure.toString());
+		}
+		return stepResult;
+	}
+
+	/**
+	 * @param operationName
+	 * @param additionalProperties
+	 * @return true if the operation has already been executed (or is being
+	 *         executed) in this snapshot
+	 */
+	public boolean contains(String operationName,
+			Map<String, Object> additionalProperties) {
+		return results.containsKey(getKey(operationName, additionalProperties));
+	}
+
+	/**
+	 * Return the number of elements in the list returned by the named
+	 * operation. If the list is already held by this snapshot, for other
+	 * metrics or for the {@link VdbActivityIndex}, its size is used.
+	 * Otherwise the raw JSON response is read and its elements are counted
+	 * without converting them into maps, and the response is discarded; the
+	 * JSON tree of the response is still built by the connection, so this
+	 * halves rather than removes the heap a count costs under load. Repeated
+	 * counts of the same operation are served from this snapshot.
+	 *
+	 * @param operationName
+	 * @param additionalProperties
+	 *            operation arguments, may be null
+	 * @return the number of elements, 0 when the operation returned no list
+	 * @throws Exception
+	 *             if the operation failed
+	 */
+	public int count(String operationName,
+			Map<String, Object> additionalProperties) throws Exception {
+		String key = getKey(operationName, additionalProperties);
+		if (results.containsKey(key)) {
+			Result result = execute(operationName, additionalProperties);
+			if (result == null || !result.isSuccess()) {
+				throw new Exception(result == null ? "No response to " + operationName //$NON-NLS-1$
+						: result.getFailureDescription());
+			}
+			return result.getResult() instanceof List ? ((List<?>) result
+					.getResult()).size() : 0;
+		}
+		Integer count = counts.get(key);
+		if (count != null) {
+			return count.intValue();
+		}
+		org.rhq.modules.plugins.jbossas7.json.Operation op = new org.rhq.modules.plugins.jbossas7.json.Operation(
+				operationName, DmrUtil.getTeiidAddress());
+		if (additionalProperties != null) {
+			op.setAdditionalProperties(additionalProperties);
+		}
+		JsonNode response = connection.executeRaw(op);
+		if (response == null) {
+			throw new Exception("No response to " + operationName); //$NON-NLS-1$
+		}
+		if (!SUCCESS.equals(response.path(OUTCOME).getTextValue())) {
+			throw new Exception(response.path(FAILURE_DESCRIPTION).asText());
+		}
+		JsonNode list = response.path(RESULT);
+		count = Integer.valueOf(list.isArray() ? list.size() : 0);
+		counts.put(key, count);
+		return count.intValue();
+	}
+
+	public Map<String, Object> getEngineStatistics() {
+		return getResultMap(execute(Platform.Operations.GET_ENGINE_STATISTICS, null));
+	}
+
+	public Map<String, Object> getCacheStatistics(String cacheType) {
+		Map<String, Object> additionalProperties = new TreeMap<String, Object>();
+		additionalProperties.put(Operation.Value.CACHETYPE, cacheType);
+		return getResultMap(execute(Platform.Operations.GET_CACHE_STATS,
+				additionalProperties));
+	}
+
+	public List<Map<String, Object>> getSessions() {
+		return getResultList(execute(Platform.Operations.GET_SESSIONS, null));
+	}
+
+	public List<Map<String, Object>> getRequests() {
+		return getResultList(execute(Platform.Operations.GET_REQUESTS, null));
+	}
+
+	public List<Map<String, Object>> getLongRunningRequests() {
+		return getResultList(execute(
+				Platform.Operations.GET_LONGRUNNINGQUERIES, null));
+	}
+
+	/**
+	 * @return the <code>get-vdb</code> result for the VDB, served from the
+	 *         {@link VdbCache} when the snapshot has one
+	 */
+	public Map<String, Object> getVdb(String vdbName, String vdbVersion) {
+		if (vdbCache != null) {
+			return vdbCache.get(connection, vdbName, vdbVersion);
+		}
+		return VDBComponent.getVdbMap(connection, vdbName, vdbVersion);
+	}
+
+	private Map<String, Object> getResultMap(Result result) {
+		if (result == null || !result.isSuccess()) {
+			return null;
+		}
+		return (Map<String, Object>) result.getResult();
+	}
+
+	private List<Map<String, Object>> getResultList(Result result) {
+		if (result == null || !result.isSuccess()) {
+			return null;
+		}
+		return (List<Map<String, Object>>) result.getResult();
+	}
+
+	static String getKey(String operationName,
+			Map<String, Object> additionalProperties) {
+		if (additionalProperties == null || additionalProperties.isEmpty()) {
+			return operationName;
+		}
+		return operationName
+				+ new TreeMap<String, Object>(additionalProperties).toString();
+	}
+
+}
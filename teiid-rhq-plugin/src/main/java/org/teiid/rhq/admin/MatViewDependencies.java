@@ -0,0 +1,203 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds which materialized views of a VDB are built from which others, from
+ * the view definitions of <code>SYSADMIN.Views</code>, so that a view is only
+ * refreshed once the views it reads from are.
+ *
+ * A view references another when its definition contains the qualified name
+ * of the other, or its bare name for a view of the same schema. Dependencies
+ * through views that are not materialized are followed, so a materialized
+ * view also waits for the materialized views under the plain views it reads.
+ * The match is textual: a name in a comment or a string literal is taken as a
+ * reference too, which can only delay a refresh, never run it too early.
+ */
+public class MatViewDependencies {
+
+	public static final String SCHEMA_NAME = "SchemaName"; //$NON-NLS-1$
+	public static final String NAME = "Name"; //$NON-NLS-1$
+	public static final String BODY = "Body"; //$NON-NLS-1$
+
+	/**
+	 * Query for the definitions of all views of a VDB
+	 */
+	public static final String VIEW_QUERY = "select SchemaName, Name, Body from SYSADMIN.Views " //$NON-NLS-1$
+			+ "where SchemaName != 'pg_catalog'"; //$NON-NLS-1$
+
+	private MatViewDependencies() {
+	}
+
+	/**
+	 * @param views
+	 *            result of {@link #VIEW_QUERY}
+	 * @param matViews
+	 *            qualified names of the materialized views to order
+	 * @return for each of the given materialized views, the others of them
+	 *         it reads from, directly or through other views
+	 */
+	public static Map<String, Set<String>> resolve(
+			List<Map<String, Object>> views, Collection<String> matViews) {
+
+		// the views each view references directly, by lower case name
+		Map<String, Set<String>> references = new HashMap<String, Set<String>>();
+		List<String[]> names = new ArrayList<String[]>();
+		Map<String, String> bodies = new HashMap<String, String>();
+		for (Map<String, Object> view : views) {
+			String schema = String.valueOf(view.get(SCHEMA_NAME)).toLowerCase();
+			String name = String.valueOf(view.get(NAME)).toLowerCase();
+			names.add(new String[] { schema, name });
+			Object body = view.get(BODY);
+			bodies.put(schema + "." + name, body == null ? "" //$NON-NLS-1$ //$NON-NLS-2$
+					: String.valueOf(body).toLowerCase().replace("\"", "")); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		for (String[] view : names) {
+			String qualified = view[0] + "." + view[1]; //$NON-NLS-1$
+			String body = bodies.get(qualified);
+			Set<String> referenced = new LinkedHashSet<String>();
+			for (String[] other : names) {
+				String otherName = other[0] + "." + other[1]; //$NON-NLS-1$
+				if (otherName.equals(qualified)) {
+					continue;
+				}
+				if (contains(body, otherName, true)
+						|| (other[0].equals(view[0]) && contains(body, other[1], false))) {
+					referenced.add(otherName);
+				}
+			}
+			references.put(qualified, referenced);
+		}
+
+		Map<String, String> matViewNames = new LinkedHashMap<String, String>();
+		for (String matView : matViews) {
+			matViewNames.put(matView.toLowerCase(), matView);
+		}
+		Map<String, Set<String>> dependencies = new LinkedHashMap<String, Set<String>>();
+		for (String matView : matViews) {
+			Set<String> dependsOn = new LinkedHashSet<String>();
+			Set<String> visited = new LinkedHashSet<String>();
+			collect(matView.toLowerCase(), references, visited);
+			for (String view : visited) {
+				String name = matViewNames.get(view);
+				if (name != null && !name.equals(matView)) {
+					dependsOn.add(name);
+				}
+			}
+			dependencies.put(matView, dependsOn);
+		}
+		return dependencies;
+	}
+
+	/**
+	 * @param dependencies
+	 *            views with the views they depend on, as returned by
+	 *            {@link #resolve(List, Collection)}
+	 * @return the same dependencies, ordered so that every view comes after
+	 *         the views it depends on, otherwise in the given order; views on
+	 *         a cycle come last
+	 */
+	public static Map<String, Set<String>> order(
+			Map<String, Set<String>> dependencies) {
+		Map<String, Set<String>> ordered = new LinkedHashMap<String, Set<String>>();
+		boolean added = true;
+		while (added) {
+			added = false;
+			for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+				if (!ordered.containsKey(entry.getKey())
+						&& ordered.keySet().containsAll(entry.getValue())) {
+					ordered.put(entry.getKey(), entry.getValue());
+					added = true;
+				}
+			}
+		}
+		for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+			if (!ordered.containsKey(entry.getKey())) {
+				ordered.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return ordered;
+	}
+
+	/**
+	 * @return the views each depending on the one before, for when the view
+	 *         definitions cannot be read
+	 */
+	public static Map<String, Set<String>> sequential(Collection<String> matViews) {
+		Map<String, Set<String>> dependencies = new LinkedHashMap<String, Set<String>>();
+		String previous = null;
+		for (String matView : matViews) {
+			Set<String> dependsOn = new LinkedHashSet<String>();
+			if (previous != null) {
+				dependsOn.add(previous);
+			}
+			dependencies.put(matView, dependsOn);
+			previous = matView;
+		}
+		return dependencies;
+	}
+
+	private static void collect(String view, Map<String, Set<String>> references,
+			Set<String> visited) {
+		Set<String> referenced = references.get(view);
+		if (referenced == null) {
+			return;
+		}
+		for (String other : referenced) {
+			if (visited.add(other)) {
+				collect(other, references, visited);
+			}
+		}
+	}
+
+	/**
+	 * @return true if the name occurs in the text as a whole identifier;
+	 *         a bare name must not be the member of a qualified name
+	 */
+	static boolean contains(String text, String name, boolean qualified) {
+		int index = text.indexOf(name);
+		while (index >= 0) {
+			int end = index + name.length();
+			boolean start = index == 0 || !isIdentifierPart(text.charAt(index - 1))
+					&& (qualified || text.charAt(index - 1) != '.');
+			if (start && (end == text.length() || !isIdentifierPart(text.charAt(end)))) {
+				return true;
+			}
+			index = text.indexOf(name, index + 1);
+		}
+		return false;
+	}
+
+	private static boolean isIdentifierPart(char c) {
+		return Character.isLetterOrDigit(c) || c == '_';
+	}
+
+}
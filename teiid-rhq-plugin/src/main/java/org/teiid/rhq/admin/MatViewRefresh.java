@@ -0,0 +1,225 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * One refresh of a materialized view, started by a {@link MatViewRefresher}
+ * and identified by its handle.
+ *
+ * The refresh is RUNNING until it is finished once, by its own thread or by a
+ * cancel or timeout; later outcomes are ignored, so that a cancelled refresh
+ * stays cancelled even if its <code>execute-query</code> returns afterwards.
+ */
+public class MatViewRefresh {
+
+	public static final String RUNNING = "RUNNING"; //$NON-NLS-1$
+	public static final String SUCCEEDED = "SUCCEEDED"; //$NON-NLS-1$
+	public static final String FAILED = "FAILED"; //$NON-NLS-1$
+	public static final String TIMED_OUT = "TIMED_OUT"; //$NON-NLS-1$
+	public static final String CANCELLED = "CANCELLED"; //$NON-NLS-1$
+
+	// status fields
+	public static final String HANDLE = "handle"; //$NON-NLS-1$
+	public static final String SCHEMA = "schema"; //$NON-NLS-1$
+	public static final String TABLE = "table"; //$NON-NLS-1$
+	public static final String STATE = "state"; //$NON-NLS-1$
+	public static final String ROWS_LOADED = "rowsLoaded"; //$NON-NLS-1$
+	public static final String ELAPSED_TIME = "elapsedTime"; //$NON-NLS-1$
+	public static final String FAILURE = "failure"; //$NON-NLS-1$
+
+	private final String handle;
+	private final String vdbName;
+	private final String vdbVersion;
+	private final String schema;
+	private final String table;
+	private final boolean invalidate;
+	private final long timeout;
+	private final long startTime = System.currentTimeMillis();
+
+	private volatile String state = RUNNING;
+	private volatile long endTime;
+	private volatile Integer rowsLoaded;
+	private volatile String failure;
+	private volatile Future<?> future;
+
+	// notified once the refresh is finished
+	private List<Runnable> listeners = new ArrayList<Runnable>();
+
+	/**
+	 * @param timeout
+	 *            time in milliseconds the refresh may run
+	 */
+	MatViewRefresh(String handle, String vdbName, String vdbVersion,
+			String schema, String table, boolean invalidate, long timeout) {
+		this.handle = handle;
+		this.vdbName = vdbName;
+		this.vdbVersion = vdbVersion;
+		this.schema = schema;
+		this.table = table;
+		this.invalidate = invalidate;
+		this.timeout = timeout;
+	}
+
+	public String getHandle() {
+		return handle;
+	}
+
+	public String getVdbName() {
+		return vdbName;
+	}
+
+	public String getVdbVersion() {
+		return vdbVersion;
+	}
+
+	public String getSchema() {
+		return schema;
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * @return the qualified name of the view, as passed to
+	 *         <code>SYSADMIN.refreshMatView</code>
+	 */
+	public String getMatView() {
+		return schema + "." + table; //$NON-NLS-1$
+	}
+
+	public boolean isInvalidate() {
+		return invalidate;
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	public boolean isRunning() {
+		return state == RUNNING;
+	}
+
+	/**
+	 * @return the time in milliseconds the refresh has been running, or ran
+	 */
+	public long getElapsedTime() {
+		long end = isRunning() ? System.currentTimeMillis() : endTime;
+		return end - startTime;
+	}
+
+	/**
+	 * @return true if the refresh is still running past its timeout
+	 */
+	public boolean isOverdue() {
+		return isRunning() && timeout > 0 && getElapsedTime() > timeout;
+	}
+
+	/**
+	 * @return the number of rows loaded into the view; null until the refresh
+	 *         succeeded, as the server only reports it at the end
+	 */
+	public Integer getRowsLoaded() {
+		return rowsLoaded;
+	}
+
+	public String getFailure() {
+		return failure;
+	}
+
+	void setFuture(Future<?> future) {
+		this.future = future;
+	}
+
+	Future<?> getFuture() {
+		return future;
+	}
+
+	/**
+	 * Run the listener once the refresh is finished, or right away if it
+	 * already is.
+	 */
+	void addListener(Runnable listener) {
+		synchronized (this) {
+			if (isRunning()) {
+				listeners.add(listener);
+				return;
+			}
+		}
+		listener.run();
+	}
+
+	/**
+	 * Set the outcome of the refresh, unless it already has one, and notify
+	 * the listeners.
+	 *
+	 * @return true if this call finished the refresh
+	 */
+	boolean finish(String outcome, Integer rows, String failureDescription) {
+		List<Runnable> finished;
+		synchronized (this) {
+			if (!isRunning()) {
+				return false;
+			}
+			this.rowsLoaded = rows;
+			this.failure = failureDescription;
+			this.endTime = System.currentTimeMillis();
+			this.state = outcome;
+			finished = listeners;
+			listeners = null;
+		}
+		for (Runnable listener : finished) {
+			listener.run();
+		}
+		return true;
+	}
+
+	/**
+	 * @return the status of the refresh, as listed by the status operation
+	 */
+	public Map<String, Object> getStatus() {
+		Map<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put(HANDLE, handle);
+		status.put(SCHEMA, schema);
+		status.put(TABLE, table);
+		status.put(STATE, state);
+		status.put(ROWS_LOADED, rowsLoaded);
+		status.put(ELAPSED_TIME, Long.valueOf(getElapsedTime()));
+		status.put(FAILURE, failure);
+		return status;
+	}
+
+}
@@ -0,0 +1,272 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.rhq.modules.plugins.jbossas7.ASConnection;
+import org.teiid.rhq.plugin.util.PluginConstants;
+
+/**
+ * Refreshes a set of materialized views of one VDB version with a
+ * {@link MatViewRefresher}. A view is started once every view it depends on
+ * has finished, and at most the given number of views of the batch run at
+ * the same time. A view is still refreshed when one it depends on failed,
+ * from the data that view held before.
+ *
+ * The batch has no thread of its own: the next views are started by the
+ * refresh that finishes, so a batch only holds threads of the refresher
+ * while its views run. Should the dependencies be circular, the first
+ * remaining view is started once nothing else of the batch runs.
+ */
+public class MatViewRefreshBatch {
+
+	private static final Log LOG = LogFactory
+			.getLog(PluginConstants.DEFAULT_LOGGER_CATEGORY);
+
+	public static final String PENDING = "PENDING"; //$NON-NLS-1$
+
+	// report fields, besides those of MatViewRefresh
+	public static final String BATCH = "batch"; //$NON-NLS-1$
+	public static final String DEPENDS_ON = "dependsOn"; //$NON-NLS-1$
+
+	private final String handle;
+	private final MatViewRefresher refresher;
+	private final ASConnection connection;
+	private final String vdbName;
+	private final String vdbVersion;
+	private final Map<String, Set<String>> dependencies;
+	private final int parallelLimit;
+	private final boolean invalidate;
+	private final long timeout;
+
+	/**
+	 * Refreshes by view; null while a view is being started
+	 */
+	private final Map<String, MatViewRefresh> started = new LinkedHashMap<String, MatViewRefresh>();
+	private boolean cancelled;
+	private long endTime;
+
+	private final Runnable next = new Runnable() {
+		public void run() {
+			schedule();
+		}
+	};
+
+	/**
+	 * @param dependencies
+	 *            the qualified names of the views to refresh, in the order
+	 *            to start them, each with the views of the batch it depends on
+	 * @param parallelLimit
+	 *            number of views of the batch refreshed at the same time
+	 */
+	MatViewRefreshBatch(String handle, MatViewRefresher refresher,
+			ASConnection connection, String vdbName, String vdbVersion,
+			Map<String, Set<String>> dependencies, int parallelLimit,
+			boolean invalidate, long timeout) {
+		this.handle = handle;
+		this.refresher = refresher;
+		this.connection = connection;
+		this.vdbName = vdbName;
+		this.vdbVersion = vdbVersion;
+		this.dependencies = dependencies;
+		this.parallelLimit = Math.max(1, parallelLimit);
+		this.invalidate = invalidate;
+		this.timeout = timeout;
+	}
+
+	public String getHandle() {
+		return handle;
+	}
+
+	public String getVdbName() {
+		return vdbName;
+	}
+
+	public String getVdbVersion() {
+		return vdbVersion;
+	}
+
+	/**
+	 * @return true once every view was refreshed, or the batch was cancelled
+	 *         and none of its views runs anymore
+	 */
+	public synchronized boolean isFinished() {
+		return endTime > 0;
+	}
+
+	synchronized long getEndTime() {
+		return endTime;
+	}
+
+	/**
+	 * Start the views whose dependencies have finished, up to the parallel
+	 * limit.
+	 */
+	void schedule() {
+		List<String> ready = new ArrayList<String>();
+		synchronized (this) {
+			int running = 0;
+			for (MatViewRefresh refresh : started.values()) {
+				if (refresh == null || refresh.isRunning()) {
+					running++;
+				}
+			}
+			if (!cancelled) {
+				for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+					if (running + ready.size() >= parallelLimit) {
+						break;
+					}
+					if (!started.containsKey(entry.getKey()) && isReady(entry.getValue())) {
+						ready.add(entry.getKey());
+					}
+				}
+				if (running == 0 && ready.isEmpty()) {
+					// circular dependencies: start the first remaining view
+					for (String view : dependencies.keySet()) {
+						if (!started.containsKey(view)) {
+							ready.add(view);
+							break;
+						}
+					}
+				}
+			}
+			if (running == 0 && ready.isEmpty()) {
+				if (endTime == 0) {
+					endTime = System.currentTimeMillis();
+					LOG.info("Materialized view refresh batch " + handle + " of VDB " //$NON-NLS-1$ //$NON-NLS-2$
+							+ vdbName + "." + vdbVersion + " finished"); //$NON-NLS-1$ //$NON-NLS-2$
+					notifyAll();
+				}
+				return;
+			}
+			for (String view : ready) {
+				started.put(view, null);
+			}
+		}
+
+		for (String view : ready) {
+			int dot = view.indexOf('.');
+			MatViewRefresh refresh = refresher.start(connection, vdbName, vdbVersion,
+					view.substring(0, dot), view.substring(dot + 1), invalidate, timeout);
+			boolean cancel;
+			synchronized (this) {
+				started.put(view, refresh);
+				// cancel() missed a view that was being started
+				cancel = cancelled;
+			}
+			if (cancel) {
+				refresher.cancel(connection, refresh);
+			}
+			refresh.addListener(next);
+		}
+	}
+
+	private boolean isReady(Set<String> dependsOn) {
+		for (String view : dependsOn) {
+			MatViewRefresh refresh = started.get(view);
+			if (refresh == null || refresh.isRunning()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Start no further views, and cancel those that run.
+	 */
+	void cancel() {
+		List<MatViewRefresh> running = new ArrayList<MatViewRefresh>();
+		synchronized (this) {
+			cancelled = true;
+			for (MatViewRefresh refresh : started.values()) {
+				if (refresh != null && refresh.isRunning()) {
+					running.add(refresh);
+				}
+			}
+		}
+		for (MatViewRefresh refresh : running) {
+			refresher.cancel(connection, refresh);
+		}
+		schedule();
+	}
+
+	/**
+	 * Wait until the batch is finished, or the given time has passed.
+	 *
+	 * @param timeout
+	 *            time in milliseconds to wait
+	 * @return true if the batch is finished
+	 */
+	public synchronized boolean await(long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		long remaining = timeout;
+		while (endTime == 0 && remaining > 0) {
+			wait(remaining);
+			remaining = deadline - System.currentTimeMillis();
+		}
+		return endTime > 0;
+	}
+
+	/**
+	 * @return the status of every view of the batch, in the order they are
+	 *         started; views not started yet are PENDING
+	 */
+	public synchronized List<Map<String, Object>> getReport() {
+		List<Map<String, Object>> report = new ArrayList<Map<String, Object>>();
+		for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+			String view = entry.getKey();
+			MatViewRefresh refresh = started.get(view);
+			Map<String, Object> row = new LinkedHashMap<String, Object>();
+			row.put(BATCH, handle);
+			if (refresh != null) {
+				row.putAll(refresh.getStatus());
+			} else {
+				int dot = view.indexOf('.');
+				row.put(MatViewRefresh.HANDLE, null);
+				row.put(MatViewRefresh.SCHEMA, view.substring(0, dot));
+				row.put(MatViewRefresh.TABLE, view.substring(dot + 1));
+				row.put(MatViewRefresh.STATE, cancelled ? MatViewRefresh.CANCELLED : PENDING);
+			}
+			List<String> dependsOn = new ArrayList<String>(entry.getValue());
+			Collections.sort(dependsOn);
+			StringBuilder names = new StringBuilder();
+			for (String name : dependsOn) {
+				if (names.length() > 0) {
+					names.append(", "); //$NON-NLS-1$
+				}
+				names.append(name);
+			}
+			row.put(DEPENDS_ON, names.toString());
+			report.add(row);
+		}
+		return report;
+	}
+
+}
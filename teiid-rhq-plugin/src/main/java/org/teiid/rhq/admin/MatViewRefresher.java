@@ -0,0 +1,408 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.rhq.modules.plugins.jbossas7.ASConnection;
+import org.rhq.modules.plugins.jbossas7.json.Result;
+import org.teiid.rhq.plugin.util.DmrUtil;
+import org.teiid.rhq.plugin.util.PluginConstants;
+import org.teiid.rhq.plugin.util.PluginConstants.ComponentType.Platform;
+import org.teiid.rhq.plugin.util.PluginConstants.Operation;
+
+/**
+ * Runs materialized view refreshes in the background, so that an operation
+ * only starts a refresh and returns its handle instead of holding an agent
+ * operation thread until <code>SYSADMIN.refreshMatView</code> is done.
+ *
+ * A refresh that runs past its timeout, or is cancelled, is finished at once;
+ * its request is then cancelled on the server, since the blocked
+ * <code>execute-query</code> cannot be interrupted from the agent. Timeouts
+ * are checked whenever the refreshes are read, by the status operation and
+ * the VDB metrics.
+ *
+ * Several views can be refreshed together as a {@link MatViewRefreshBatch}.
+ * Finished refreshes and batches are kept for {@link #RETENTION} milliseconds
+ * so that their outcome can still be read. The Platform component owns one
+ * refresher for all of its VDBs.
+ */
+public class MatViewRefresher {
+
+	private static final Log LOG = LogFactory
+			.getLog(PluginConstants.DEFAULT_LOGGER_CATEGORY);
+
+	public static final int DEFAULT_THREADS = 4;
+	public static final long DEFAULT_TIMEOUT = 9999999;
+	public static final long RETENTION = 3600000;
+	private static final int MAX_FINISHED = 100;
+
+	private static final String REFRESH_COMMAND = "refreshMatView('"; //$NON-NLS-1$
+	private static final String BATCH_PREFIX = "batch-"; //$NON-NLS-1$
+
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong handles = new AtomicLong();
+
+	/**
+	 * Refreshes by handle, in the order they were started
+	 */
+	private final Map<String, MatViewRefresh> refreshes = new LinkedHashMap<String, MatViewRefresh>();
+
+	/**
+	 * Batches by handle, in the order they were started
+	 */
+	private final Map<String, MatViewRefreshBatch> batches = new LinkedHashMap<String, MatViewRefreshBatch>();
+
+	private volatile long timeout = DEFAULT_TIMEOUT;
+
+	public MatViewRefresher(int threads) {
+		threads = Math.max(1, threads);
+		final AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 60,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "Teiid Materialized View Refresh " //$NON-NLS-1$
+								+ threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @param threads
+	 *            number of refreshes run at the same time; others wait
+	 */
+	public void setThreads(int threads) {
+		threads = Math.max(1, threads);
+		if (threads > executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(threads);
+			executor.setCorePoolSize(threads);
+		} else {
+			executor.setCorePoolSize(threads);
+			executor.setMaximumPoolSize(threads);
+		}
+	}
+
+	public int getThreads() {
+		return executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * @param timeout
+	 *            time in milliseconds a refresh may run unless it is started
+	 *            with a timeout of its own
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout > 0 ? timeout : DEFAULT_TIMEOUT;
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Start the refresh of a materialized view. A refresh of the same view
+	 * that is still running is returned instead of starting another one.
+	 *
+	 * @param timeout
+	 *            time in milliseconds the refresh may run; 0 or less for the
+	 *            default timeout
+	 */
+	public synchronized MatViewRefresh start(final ASConnection connection,
+			String vdbName, String vdbVersion, String schema, String table,
+			boolean invalidate, long timeout) {
+		prune();
+		for (MatViewRefresh refresh : refreshes.values()) {
+			if (refresh.isRunning() && refresh.getVdbName().equals(vdbName)
+					&& refresh.getVdbVersion().equals(vdbVersion)
+					&& refresh.getMatView().equalsIgnoreCase(schema + "." + table)) { //$NON-NLS-1$
+				return refresh;
+			}
+		}
+
+		final MatViewRefresh refresh = new MatViewRefresh(String.valueOf(handles
+				.incrementAndGet()), vdbName, vdbVersion, schema, table,
+				invalidate, timeout > 0 ? timeout : this.timeout);
+		refreshes.put(refresh.getHandle(), refresh);
+		try {
+			refresh.setFuture(executor.submit(new Runnable() {
+				public void run() {
+					execute(connection, refresh);
+				}
+			}));
+		} catch (RejectedExecutionException e) {
+			refresh.finish(MatViewRefresh.FAILED, null, "refresher is shut down"); //$NON-NLS-1$
+		}
+		return refresh;
+	}
+
+	/**
+	 * Start the refresh of a set of materialized views of one VDB version,
+	 * ordered by their dependencies.
+	 *
+	 * @param dependencies
+	 *            the qualified names of the views, in the order to start
+	 *            them, each with the other views of the set it depends on
+	 * @param parallelLimit
+	 *            number of views of the set refreshed at the same time; the
+	 *            threads of this refresher are shared by all refreshes
+	 * @param timeout
+	 *            time in milliseconds each refresh may run; 0 or less for the
+	 *            default timeout
+	 */
+	public MatViewRefreshBatch startBatch(ASConnection connection,
+			String vdbName, String vdbVersion,
+			Map<String, Set<String>> dependencies, int parallelLimit,
+			boolean invalidate, long timeout) {
+		MatViewRefreshBatch batch;
+		synchronized (this) {
+			prune();
+			batch = new MatViewRefreshBatch(BATCH_PREFIX + handles.incrementAndGet(), this,
+					connection, vdbName, vdbVersion, dependencies, parallelLimit,
+					invalidate, timeout);
+			batches.put(batch.getHandle(), batch);
+		}
+		batch.schedule();
+		return batch;
+	}
+
+	/**
+	 * @return the batch of the given handle, or null if it is unknown or was
+	 *         finished too long ago
+	 */
+	public synchronized MatViewRefreshBatch getBatch(String handle) {
+		return handle == null ? null : batches.get(handle.trim());
+	}
+
+	/**
+	 * Start no further views of the batch, and cancel those that run.
+	 */
+	public void cancel(MatViewRefreshBatch batch) {
+		batch.cancel();
+	}
+
+	private void execute(ASConnection connection, MatViewRefresh refresh) {
+		if (!refresh.isRunning()) {
+			// cancelled while queued
+			return;
+		}
+		try {
+			LOG.info("Refreshing materialized view " + refresh.getMatView() //$NON-NLS-1$
+					+ " of VDB " + refresh.getVdbName() + "." + refresh.getVdbVersion()); //$NON-NLS-1$ //$NON-NLS-2$
+			Result result = TeiidModuleView.executeMatViewRefresh(connection, refresh);
+			if (result != null && result.isSuccess()) {
+				refresh.finish(MatViewRefresh.SUCCEEDED, getRowCount(result.getResult()), null);
+			} else {
+				boolean late = refresh.getElapsedTime() >= refresh.getTimeout();
+				refresh.finish(late ? MatViewRefresh.TIMED_OUT : MatViewRefresh.FAILED, null,
+						result == null ? null : result.getFailureDescription());
+			}
+		} catch (Exception e) {
+			LOG.error("Failed to refresh materialized view " + refresh.getMatView(), e); //$NON-NLS-1$
+			refresh.finish(MatViewRefresh.FAILED, null, e.getMessage());
+		} finally {
+			// never leave a refresh running once its thread is done with it
+			refresh.finish(MatViewRefresh.FAILED, null, "refresh ended without a result"); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * @return the value returned by <code>SYSADMIN.refreshMatView</code>,
+	 *         the number of rows loaded
+	 */
+	static Integer getRowCount(Object result) {
+		if (!(result instanceof List) || ((List<?>) result).isEmpty()) {
+			return null;
+		}
+		Object row = ((List<?>) result).get(0);
+		if (row instanceof Map) {
+			for (Object value : ((Map<?, ?>) row).values()) {
+				if (value instanceof Number) {
+					return Integer.valueOf(((Number) value).intValue());
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the refresh of the given handle, or null if it is unknown or
+	 *         was finished too long ago
+	 */
+	public synchronized MatViewRefresh get(String handle) {
+		return handle == null ? null : refreshes.get(handle.trim());
+	}
+
+	/**
+	 * @return the refreshes of the given VDB version, in the order they were
+	 *         started
+	 */
+	public synchronized List<MatViewRefresh> getRefreshes(String vdbName,
+			String vdbVersion) {
+		prune();
+		List<MatViewRefresh> list = new ArrayList<MatViewRefresh>();
+		for (MatViewRefresh refresh : refreshes.values()) {
+			if (refresh.getVdbName().equals(vdbName)
+					&& refresh.getVdbVersion().equals(vdbVersion)) {
+				list.add(refresh);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Cancel a running refresh.
+	 *
+	 * @return false if the refresh had already finished
+	 */
+	public boolean cancel(ASConnection connection, MatViewRefresh refresh) {
+		if (!refresh.finish(MatViewRefresh.CANCELLED, null, "cancelled")) { //$NON-NLS-1$
+			return false;
+		}
+		stop(connection, refresh);
+		return true;
+	}
+
+	/**
+	 * Finish the refreshes of the given VDB version that run past their
+	 * timeout, and cancel their requests on the server.
+	 */
+	public void checkTimeouts(ASConnection connection, String vdbName,
+			String vdbVersion) {
+		for (MatViewRefresh refresh : getRefreshes(vdbName, vdbVersion)) {
+			if (refresh.isOverdue()
+					&& refresh.finish(MatViewRefresh.TIMED_OUT, null, "not finished within " //$NON-NLS-1$
+							+ refresh.getTimeout() + " ms")) { //$NON-NLS-1$
+				stop(connection, refresh);
+			}
+		}
+	}
+
+	private void stop(ASConnection connection, MatViewRefresh refresh) {
+		Future<?> future = refresh.getFuture();
+		if (future != null) {
+			future.cancel(true);
+		}
+		try {
+			cancelRequests(connection, refresh);
+		} catch (Exception e) {
+			LOG.error("Failed to cancel the refresh of materialized view " //$NON-NLS-1$
+					+ refresh.getMatView() + ": " + e.getMessage()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Cancel the request running <code>SYSADMIN.refreshMatView</code> for
+	 * the view of the refresh, if the server is still running it.
+	 */
+	private static void cancelRequests(ASConnection connection, MatViewRefresh refresh) {
+		Map<String, Object> arguments = new LinkedHashMap<String, Object>();
+		arguments.put(Operation.Value.VDB_NAME, refresh.getVdbName());
+		arguments.put(Operation.Value.VDB_VERSION, refresh.getVdbVersion());
+		Result result = TeiidModuleView.executeOperation(connection,
+				Platform.Operations.LIST_REQUESTS_PER_VDB, DmrUtil.getTeiidAddress(), arguments);
+		if (result == null || !result.isSuccess() || !(result.getResult() instanceof List)) {
+			return;
+		}
+		String command = REFRESH_COMMAND + refresh.getMatView() + "'"; //$NON-NLS-1$
+		for (Map<String, Object> request : (List<Map<String, Object>>) result.getResult()) {
+			Object sql = request.get(ActivityQuery.COMMAND);
+			if (Boolean.TRUE.equals(request.get(TranslatorActivity.SOURCE_REQUEST))
+					|| sql == null || String.valueOf(sql).indexOf(command) < 0) {
+				continue;
+			}
+			Map<String, Object> cancel = new LinkedHashMap<String, Object>();
+			cancel.put(Operation.Value.REQUEST_ID, request.get(Operation.Value.REQUEST_ID));
+			cancel.put(Operation.Value.SESSION, request.get(Operation.Value.SESSION_ID));
+			Result cancelled = TeiidModuleView.executeOperation(connection,
+					Platform.Operations.KILL_REQUEST, DmrUtil.getTeiidAddress(), cancel);
+			if (cancelled == null || !cancelled.isSuccess()) {
+				LOG.warn("Could not cancel request " + request.get(Operation.Value.REQUEST_ID) //$NON-NLS-1$
+						+ " refreshing " + refresh.getMatView() //$NON-NLS-1$
+						+ (cancelled == null ? "" : ": " + cancelled.getFailureDescription())); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+	}
+
+	/**
+	 * Drop the refreshes finished longer than {@link #RETENTION} ago, and
+	 * the oldest ones beyond {@link #MAX_FINISHED}.
+	 */
+	private void prune() {
+		long now = System.currentTimeMillis();
+		for (Iterator<MatViewRefreshBatch> i = batches.values().iterator(); i.hasNext();) {
+			MatViewRefreshBatch batch = i.next();
+			if (batch.isFinished() && now - batch.getEndTime() > RETENTION) {
+				i.remove();
+			}
+		}
+		int finished = 0;
+		for (MatViewRefresh refresh : refreshes.values()) {
+			if (!refresh.isRunning()) {
+				finished++;
+			}
+		}
+		for (Iterator<MatViewRefresh> i = refreshes.values().iterator(); i.hasNext();) {
+			MatViewRefresh refresh = i.next();
+			if (refresh.isRunning()) {
+				continue;
+			}
+			if (finished > MAX_FINISHED
+					|| now - refresh.getStartTime() - refresh.getElapsedTime() > RETENTION) {
+				i.remove();
+				finished--;
+			}
+		}
+	}
+
+	/**
+	 * Stop running refreshes. Refreshes already running on the server are
+	 * left to complete there.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		synchronized (this) {
+			refreshes.clear();
+			batches.clear();
+		}
+	}
+
+}
@@ -0,0 +1,250 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.teiid.rhq.plugin.util.PluginConstants;
+
+/**
+ * Reads the metrics of a collection cycle on a bounded pool of threads, so
+ * that one slow DMR call only delays the metrics that depend on it. Every
+ * metric has to be read within the timeout from the moment its read starts,
+ * as the pool is shared and a metric may first wait behind those of other
+ * resources. A metric that is late, or that did not start within the time
+ * the reads queued before it may take, is dropped from the result and
+ * counted as skipped, and the others are still returned. A late read is left
+ * to finish, as it may be loading a result that other metrics share.
+ *
+ * The Platform component owns one collector for its own metrics and those of
+ * its other child components, one for the metrics of the VDBs, and one to
+ * load VDB details during discovery. Each collection that skips metrics logs
+ * how many at warn level, so that a pool too small for its load shows.
+ */
+public class MetricCollector {
+
+	private static final Log LOG = LogFactory
+			.getLog(PluginConstants.DEFAULT_LOGGER_CATEGORY);
+
+	public static final int DEFAULT_THREADS = 4;
+	public static final long DEFAULT_TIMEOUT = 10000;
+
+	/**
+	 * Reads a single metric value
+	 */
+	public interface MetricReader {
+		Object read(String metric) throws Exception;
+	}
+
+	/**
+	 * The read of one metric, with the times it was submitted and started
+	 */
+	private static class Read implements Callable<Object> {
+		final String metric;
+		final MetricReader reader;
+		long submitted;
+		long queueTimeout;
+		volatile long started;
+		Future<Object> future;
+
+		Read(String metric, MetricReader reader) {
+			this.metric = metric;
+			this.reader = reader;
+		}
+
+		public Object call() throws Exception {
+			started = System.currentTimeMillis();
+			return reader.read(metric);
+		}
+	}
+
+	private final String name;
+
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong skipped = new AtomicLong();
+
+	private volatile long timeout = DEFAULT_TIMEOUT;
+
+	public MetricCollector(int threads) {
+		this("Metric Collector", threads); //$NON-NLS-1$
+	}
+
+	/**
+	 * @param name
+	 *            names the threads and the log messages of this collector
+	 */
+	public MetricCollector(final String name, int threads) {
+		this.name = name;
+		threads = Math.max(1, threads);
+		final AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 60,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "Teiid " + name + " " //$NON-NLS-1$ //$NON-NLS-2$
+								+ threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	public void setThreads(int threads) {
+		threads = Math.max(1, threads);
+		if (threads > executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(threads);
+			executor.setCorePoolSize(threads);
+		} else {
+			executor.setCorePoolSize(threads);
+			executor.setMaximumPoolSize(threads);
+		}
+	}
+
+	/**
+	 * @param timeout
+	 *            time in milliseconds allowed for each metric, from the moment
+	 *            its read starts
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Read the given metrics in parallel.
+	 *
+	 * @return the values of the metrics that were read in time and without
+	 *         error, in the order of the given names
+	 */
+	public Map<String, Object> collect(Collection<String> metrics,
+			MetricReader reader) {
+		List<Read> reads = new ArrayList<Read>(metrics.size());
+		Map<String, Object> values = new LinkedHashMap<String, Object>();
+		for (String metric : metrics) {
+			Read read = new Read(metric, reader);
+			read.submitted = System.currentTimeMillis();
+			// each round of reads queued before this one may take the timeout
+			read.queueTimeout = timeout
+					* (1 + executor.getQueue().size() / executor.getMaximumPoolSize());
+			try {
+				read.future = executor.submit(read);
+				reads.add(read);
+			} catch (RejectedExecutionException e) {
+				// shut down, read in the calling thread
+				putValue(values, metric, reader);
+			}
+		}
+
+		int skippedReads = 0;
+		int notStarted = 0;
+		for (Read read : reads) {
+			try {
+				values.put(read.metric, get(read));
+			} catch (TimeoutException e) {
+				// a queued read does not start anymore, a running one finishes
+				read.future.cancel(false);
+				skipped.incrementAndGet();
+				skippedReads++;
+				if (read.started == 0) {
+					notStarted++;
+				}
+				LOG.debug(name + ": skipped [" + read.metric //$NON-NLS-1$
+						+ (read.started == 0 ? "], not started within " + read.queueTimeout //$NON-NLS-1$
+								: "], not read within " + timeout) + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				read.future.cancel(false);
+			} catch (ExecutionException e) {
+				LOG.error("Failed to obtain measurement [" + read.metric //$NON-NLS-1$
+						+ "]. Cause: " + e.getCause()); //$NON-NLS-1$
+			}
+		}
+		if (skippedReads > 0) {
+			LOG.warn(name + ": skipped " + skippedReads + " of " + metrics.size() //$NON-NLS-1$ //$NON-NLS-2$
+					+ " metrics, " + notStarted + " of them still queued for its " //$NON-NLS-1$ //$NON-NLS-2$
+					+ executor.getMaximumPoolSize() + " threads"); //$NON-NLS-1$
+		}
+		return values;
+	}
+
+	/**
+	 * Wait for a read until the timeout has passed since it started, or
+	 * until its queue timeout has passed while it has not started yet.
+	 */
+	private Object get(Read read) throws InterruptedException,
+			ExecutionException, TimeoutException {
+		while (true) {
+			long started = read.started;
+			long wait = (started == 0 ? read.submitted + read.queueTimeout
+					: started + timeout) - System.currentTimeMillis();
+			try {
+				return read.future.get(Math.max(0, wait), TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				if (read.started == started) {
+					throw e;
+				}
+				// started while waiting, it has its own timeout from now on
+			}
+		}
+	}
+
+	private void putValue(Map<String, Object> values, String metric,
+			MetricReader reader) {
+		try {
+			values.put(metric, reader.read(metric));
+		} catch (Exception e) {
+			LOG.error("Failed to obtain measurement [" + metric //$NON-NLS-1$
+					+ "]. Cause: " + e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * @return the number of metrics dropped because they were late, since
+	 *         this collector was created
+	 */
+	public long getSkippedCount() {
+		return skipped.get();
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+}
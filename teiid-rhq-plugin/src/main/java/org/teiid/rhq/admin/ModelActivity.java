@@ -0,0 +1,216 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.teiid.rhq.plugin.VDBComponent;
+import org.teiid.rhq.plugin.util.PluginConstants.Operation;
+
+/**
+ * Source activity of the physical models of one VDB version, computed from
+ * the <code>get-vdb</code> result and a {@link VdbActivityIndex} without any
+ * DMR call of its own.
+ *
+ * The command of a source request names its groups qualified by the model
+ * they belong to, so each source request is attributed to the physical model
+ * whose name qualifies the first group of its command. A source request whose
+ * command names no physical model of the VDB is shared between the physical
+ * models in proportion to their number of sources. {@link TranslatorActivity}
+ * attributes source requests to translators through the same models.
+ *
+ * Instances are immutable once built.
+ */
+public class ModelActivity {
+
+	private final long timestamp;
+
+	private final Map<String, Integer> sourceCounts = new HashMap<String, Integer>();
+	private final Map<String, Double> activeSourceRequests = new HashMap<String, Double>();
+	private final Map<String, Double> sourceRequestRates = new HashMap<String, Double>();
+	private final boolean hasRates;
+
+	// source requests seen by this build, to find the new ones in the next
+	private final Set<String> sourceRequestKeys = new HashSet<String>();
+
+	/**
+	 * @param vdbMap
+	 *            <code>get-vdb</code> result
+	 * @param index
+	 *            sessions and requests by VDB
+	 * @param previous
+	 *            the previous build for the same VDB, for the rates; may be
+	 *            null
+	 */
+	public ModelActivity(Map<String, Object> vdbMap, String vdbName,
+			String vdbVersion, VdbActivityIndex index, ModelActivity previous) {
+		this.timestamp = index.getTimestamp();
+
+		int sources = 0;
+		List<Map<String, Object>> models = vdbMap == null ? null
+				: (List<Map<String, Object>>) vdbMap.get(VDBComponent.MODELS);
+		if (models != null) {
+			for (Map<String, Object> model : models) {
+				if (!VDBComponent.PHYSICAL.equals(model.get(VDBComponent.MODELTYPE))) {
+					continue;
+				}
+				List<Map<String, Object>> mappings = (List<Map<String, Object>>) model
+						.get(VDBComponent.SOURCE_MAPPINGS);
+				int count = mappings == null ? 0 : mappings.size();
+				sourceCounts.put((String) model.get(VDBComponent.MODELNAME),
+						Integer.valueOf(count));
+				sources += count;
+			}
+		}
+
+		// source requests by model, null for those of no known model
+		Map<String, int[]> active = new HashMap<String, int[]>();
+		Map<String, int[]> started = new HashMap<String, int[]>();
+		for (Map<String, Object> request : index.getRequests(vdbName, vdbVersion)) {
+			if (!Boolean.TRUE.equals(request.get(TranslatorActivity.SOURCE_REQUEST))) {
+				continue;
+			}
+			String key = request.get(VdbActivityIndex.SESSION_ID) + "." //$NON-NLS-1$
+					+ request.get(Operation.Value.REQUEST_ID) + "." //$NON-NLS-1$
+					+ request.get(TranslatorActivity.NODE_ID);
+			sourceRequestKeys.add(key);
+			String model = getModel((String) request.get(ActivityQuery.COMMAND),
+					sourceCounts.keySet());
+			increment(active, model);
+			if (previous != null && !previous.sourceRequestKeys.contains(key)) {
+				increment(started, model);
+			}
+		}
+
+		this.hasRates = previous != null && timestamp > previous.timestamp;
+		for (Map.Entry<String, Integer> entry : sourceCounts.entrySet()) {
+			double share = sources == 0 ? 0 : entry.getValue().doubleValue() / sources;
+			activeSourceRequests.put(entry.getKey(), Double.valueOf(
+					get(active, entry.getKey()) + get(active, null) * share));
+			if (hasRates) {
+				sourceRequestRates.put(entry.getKey(), Double.valueOf(
+						(get(started, entry.getKey()) + get(started, null) * share)
+						* 1000 / (timestamp - previous.timestamp)));
+			}
+		}
+	}
+
+	private static void increment(Map<String, int[]> counts, String model) {
+		int[] count = counts.get(model);
+		if (count == null) {
+			counts.put(model, new int[] { 1 });
+		} else {
+			count[0]++;
+		}
+	}
+
+	private static int get(Map<String, int[]> counts, String model) {
+		int[] count = counts.get(model);
+		return count == null ? 0 : count[0];
+	}
+
+	/**
+	 * @param command
+	 *            command of a source request, for example
+	 *            <code>SELECT g_0.a FROM Model1.Table1 AS g_0</code>
+	 * @return the model whose name qualifies the first group of the command,
+	 *         or null if no model does
+	 */
+	static String getModel(String command, Collection<String> models) {
+		if (command == null) {
+			return null;
+		}
+		String text = command.toLowerCase();
+		String found = null;
+		int foundAt = Integer.MAX_VALUE;
+		for (String model : models) {
+			String name = model.toLowerCase();
+			int at = Math.min(indexOfQualifier(text, name + "."), //$NON-NLS-1$
+					indexOfQualifier(text, '"' + name + "\".")); //$NON-NLS-1$
+			if (at < foundAt) {
+				found = model;
+				foundAt = at;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return the first position of the qualifier that does not continue
+	 *         another name, or {@link Integer#MAX_VALUE}
+	 */
+	private static int indexOfQualifier(String text, String qualifier) {
+		int index = text.indexOf(qualifier);
+		while (index > 0) {
+			char before = text.charAt(index - 1);
+			if (!Character.isLetterOrDigit(before) && before != '_'
+					&& before != '.' && before != '"') {
+				return index;
+			}
+			index = text.indexOf(qualifier, index + 1);
+		}
+		return index == 0 ? 0 : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * @return the time of the {@link VdbActivityIndex} this was built from
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return the number of sources bound to the model
+	 */
+	public int getSourceCount(String model) {
+		Integer count = sourceCounts.get(model);
+		return count == null ? 0 : count.intValue();
+	}
+
+	/**
+	 * @return the number of source requests running for the model, including
+	 *         its share of those whose model is not known
+	 */
+	public double getActiveSourceRequests(String model) {
+		Double count = activeSourceRequests.get(model);
+		return count == null ? 0 : count.doubleValue();
+	}
+
+	/**
+	 * @return the number of source requests per second started for the model
+	 *         since the previous build, including its share of those whose
+	 *         model is not known, or null on the first build
+	 */
+	public Double getSourceRequestRate(String model) {
+		if (!hasRates) {
+			return null;
+		}
+		Double rate = sourceRequestRates.get(model);
+		return rate == null ? Double.valueOf(0) : rate;
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the previous sample of a resource's counters so that interval deltas
+ * and per-second rates can be published. A counter that goes down is taken to
+ * have been reset by a server restart, and its current value is used as the
+ * delta.
+ *
+ * Samples are identified by a collection timestamp; recording the same key
+ * twice with the same timestamp returns the first result. Metrics derived
+ * from the same counter are recorded under their own key, so that each is
+ * measured over the interval of its own schedule.
+ */
+public class RateTracker {
+
+	public static final String RATE_PREFIX = "RATE."; //$NON-NLS-1$
+	public static final String DELTA_PREFIX = "DELTA."; //$NON-NLS-1$
+
+	private final Map<String, Sample> samples = new HashMap<String, Sample>();
+
+	/**
+	 * The change of a counter between two collections
+	 */
+	public static class Sample {
+		final long timestamp;
+		final double value;
+		final Set<String> ids;
+		final Double delta;
+		final long elapsed;
+
+		Sample(long timestamp, double value, Set<String> ids, Sample previous) {
+			this.timestamp = timestamp;
+			this.value = value;
+			this.ids = ids;
+			if (previous == null || timestamp <= previous.timestamp) {
+				this.delta = null;
+				this.elapsed = 0;
+			} else {
+				this.elapsed = timestamp - previous.timestamp;
+				if (ids != null) {
+					int added = 0;
+					for (String id : ids) {
+						if (!previous.ids.contains(id)) {
+							added++;
+						}
+					}
+					this.delta = Double.valueOf(added);
+				} else if (value < previous.value) {
+					// counter reset, count from zero
+					this.delta = Double.valueOf(value);
+				} else {
+					this.delta = Double.valueOf(value - previous.value);
+				}
+			}
+		}
+
+		/**
+		 * @return the change since the previous sample, or null for the first
+		 *         sample
+		 */
+		public Double getDelta() {
+			return delta;
+		}
+
+		/**
+		 * @return the change per second since the previous sample, or null
+		 *         for the first sample
+		 */
+		public Double getRate() {
+			if (delta == null) {
+				return null;
+			}
+			return Double.valueOf(delta.doubleValue() * 1000 / elapsed);
+		}
+	}
+
+	/**
+	 * Record the current value of a cumulative counter.
+	 */
+	public synchronized Sample update(String key, double value, long timestamp) {
+		Sample previous = samples.get(key);
+		if (previous != null && previous.timestamp == timestamp) {
+			return previous;
+		}
+		Sample sample = new Sample(timestamp, value, null, previous);
+		samples.put(key, sample);
+		return sample;
+	}
+
+	/**
+	 * Record the identifiers currently present, for example session ids. The
+	 * delta is the number of identifiers not present in the previous sample,
+	 * so identifiers that come and go between two samples are missed.
+	 */
+	public synchronized Sample updateIds(String key, Collection<String> ids,
+			long timestamp) {
+		Sample previous = samples.get(key);
+		if (previous != null && previous.timestamp == timestamp) {
+			return previous;
+		}
+		Sample sample = new Sample(timestamp, ids.size(), new HashSet<String>(
+				ids), previous);
+		samples.put(key, sample);
+		return sample;
+	}
+
+	public synchronized void clear() {
+		samples.clear();
+	}
+
+}
@@ -0,0 +1,280 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.rhq.plugin.util.PluginConstants.Operation;
+
+/**
+ * Follows the requests of a Teiid instance across successive
+ * {@link VdbActivityIndex} builds. A request that was listed by one build and
+ * is gone from the next one has finished; its lifetime, from its
+ * <code>start-time</code> to the time of the build that no longer lists it, is
+ * recorded into a {@link LatencyHistogram} for the whole instance and one for
+ * its VDB. The histograms are cumulative, as the builds come from both the
+ * Platform collection and the VDB components; each reader is given the
+ * difference from its previous read, as {@link RateTracker} does for
+ * counters, so no request is counted twice or lost whichever builds fall
+ * between two reads.
+ *
+ * Only complete indexes are followed, and an index older than the last one
+ * followed is ignored: both would list live requests as gone, and count
+ * them twice once they are listed again and really finish.
+ *
+ * The lifetime is an upper bound, accurate to the polling interval, and
+ * assumes the agent and server clocks agree. Requests that start and finish
+ * between two polls are never seen.
+ *
+ * Live requests are kept in an open addressing table keyed by a long made of
+ * the session id hash and the execution id, so tracking tens of thousands of
+ * requests allocates no per-request objects.
+ */
+public class RequestLatencyTracker {
+
+	public static final String START_TIME = "start-time"; //$NON-NLS-1$
+
+	private static final int MIN_CAPACITY = 64;
+
+	// live requests, slots are in use when used[i] is true
+	private long[] keys = new long[MIN_CAPACITY];
+	private long[] starts = new long[MIN_CAPACITY];
+	private int[] vdbs = new int[MIN_CAPACITY];
+	private int[] seen = new int[MIN_CAPACITY];
+	private boolean[] used = new boolean[MIN_CAPACITY];
+	private int size;
+	private int generation;
+	// time of the last index followed
+	private long lastUpdate;
+
+	private final List<String> vdbKeys = new ArrayList<String>();
+	private final Map<String, Integer> vdbSlots = new HashMap<String, Integer>();
+
+	private LatencyHistogram total = new LatencyHistogram();
+	private final Map<String, LatencyHistogram> totalByVdb = new HashMap<String, LatencyHistogram>();
+
+	// previous read of the instance and of each VDB
+	private Sample previous;
+	private final Map<String, Sample> previousByVdb = new HashMap<String, Sample>();
+
+	/**
+	 * A read of a cumulative histogram, with the difference from the read
+	 * before
+	 */
+	private static class Sample {
+		final long timestamp;
+		final LatencyHistogram total;
+		final LatencyHistogram interval;
+
+		Sample(long timestamp, LatencyHistogram total, Sample previous) {
+			this.timestamp = timestamp;
+			this.total = total;
+			if (previous == null || timestamp <= previous.timestamp) {
+				this.interval = null;
+			} else {
+				this.interval = total.subtract(previous.total);
+			}
+		}
+	}
+
+	/**
+	 * Record the requests of the given index, and the lifetimes of those that
+	 * finished since the previous index. Incomplete indexes, and indexes
+	 * older than the last one, are ignored.
+	 */
+	public synchronized void update(VdbActivityIndex index) {
+		if (!index.isComplete() || index.getTimestamp() < lastUpdate) {
+			return;
+		}
+		lastUpdate = index.getTimestamp();
+		generation++;
+		for (Map.Entry<String, VdbActivityIndex.Bucket> entry : index
+				.getBuckets().entrySet()) {
+			int vdb = getVdbSlot(entry.getKey());
+			for (Map<String, Object> request : entry.getValue().requests) {
+				Object start = request.get(START_TIME);
+				if (!(start instanceof Number)) {
+					continue;
+				}
+				long key = getKey(request.get(VdbActivityIndex.SESSION_ID),
+						request.get(Operation.Value.REQUEST_ID));
+				put(key, ((Number) start).longValue(), vdb);
+			}
+		}
+
+		// Everything not seen in this generation has finished
+		long now = index.getTimestamp();
+		int live = 0;
+		for (int i = 0; i < used.length; i++) {
+			if (!used[i]) {
+				continue;
+			}
+			if (seen[i] == generation) {
+				live++;
+				continue;
+			}
+			long latency = Math.max(0, now - starts[i]);
+			total.record(latency);
+			String vdbKey = vdbKeys.get(vdbs[i]);
+			LatencyHistogram vdbTotal = totalByVdb.get(vdbKey);
+			if (vdbTotal == null) {
+				vdbTotal = new LatencyHistogram();
+				totalByVdb.put(vdbKey, vdbTotal);
+			}
+			vdbTotal.record(latency);
+			used[i] = false;
+		}
+		rehash(live);
+	}
+
+	/**
+	 * @param timestamp
+	 *            time of the collection cycle of the reader; reads of the same
+	 *            cycle are given the same result
+	 * @return the lifetimes of the requests that finished since the previous
+	 *         read of the instance, or null on the first read
+	 */
+	public synchronized LatencyHistogram getInterval(long timestamp) {
+		if (previous == null || previous.timestamp != timestamp) {
+			previous = new Sample(timestamp, total.copy(), previous);
+		}
+		return previous.interval;
+	}
+
+	/**
+	 * @param timestamp
+	 *            time of the collection cycle of the reader; reads of the same
+	 *            cycle are given the same result
+	 * @return the lifetimes of the requests of the given VDB that finished
+	 *         since the previous read of the VDB, or null on the first read
+	 */
+	public synchronized LatencyHistogram getInterval(String vdbName,
+			String vdbVersion, long timestamp) {
+		String vdbKey = VdbActivityIndex.getKey(vdbName, vdbVersion);
+		Sample sample = previousByVdb.get(vdbKey);
+		if (sample == null || sample.timestamp != timestamp) {
+			LatencyHistogram vdbTotal = totalByVdb.get(vdbKey);
+			sample = new Sample(timestamp, vdbTotal == null ? new LatencyHistogram()
+					: vdbTotal.copy(), sample);
+			previousByVdb.put(vdbKey, sample);
+		}
+		return sample.interval;
+	}
+
+	public synchronized void clear() {
+		keys = new long[MIN_CAPACITY];
+		starts = new long[MIN_CAPACITY];
+		vdbs = new int[MIN_CAPACITY];
+		seen = new int[MIN_CAPACITY];
+		used = new boolean[MIN_CAPACITY];
+		size = 0;
+		lastUpdate = 0;
+		total = new LatencyHistogram();
+		totalByVdb.clear();
+		previous = null;
+		previousByVdb.clear();
+	}
+
+	private int getVdbSlot(String vdbKey) {
+		Integer slot = vdbSlots.get(vdbKey);
+		if (slot == null) {
+			slot = Integer.valueOf(vdbKeys.size());
+			vdbKeys.add(vdbKey);
+			vdbSlots.put(vdbKey, slot);
+		}
+		return slot.intValue();
+	}
+
+	static long getKey(Object sessionId, Object executionId) {
+		long execution = executionId instanceof Number ? ((Number) executionId)
+				.longValue() : String.valueOf(executionId).hashCode();
+		return ((long) String.valueOf(sessionId).hashCode() << 32)
+				| (execution & 0xffffffffL);
+	}
+
+	private void put(long key, long start, int vdb) {
+		if ((size + 1) * 2 > used.length) {
+			rehash(size + 1);
+		}
+		int i = indexFor(key, used.length);
+		while (used[i]) {
+			if (keys[i] == key) {
+				seen[i] = generation;
+				return;
+			}
+			i = (i + 1) & (used.length - 1);
+		}
+		used[i] = true;
+		keys[i] = key;
+		starts[i] = start;
+		vdbs[i] = vdb;
+		seen[i] = generation;
+		size++;
+	}
+
+	/**
+	 * Copy the slots in use into a table sized for the given number of
+	 * entries, at most half full. Also drops the slots freed by
+	 * {@link #update(VdbActivityIndex)}.
+	 */
+	private void rehash(int entries) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < entries * 2) {
+			capacity <<= 1;
+		}
+		long[] oldKeys = keys;
+		long[] oldStarts = starts;
+		int[] oldVdbs = vdbs;
+		int[] oldSeen = seen;
+		boolean[] oldUsed = used;
+		keys = new long[capacity];
+		starts = new long[capacity];
+		vdbs = new int[capacity];
+		seen = new int[capacity];
+		used = new boolean[capacity];
+		size = 0;
+		for (int j = 0; j < oldUsed.length; j++) {
+			if (!oldUsed[j]) {
+				continue;
+			}
+			int i = indexFor(oldKeys[j], capacity);
+			while (used[i]) {
+				i = (i + 1) & (capacity - 1);
+			}
+			used[i] = true;
+			keys[i] = oldKeys[j];
+			starts[i] = oldStarts[j];
+			vdbs[i] = oldVdbs[j];
+			seen[i] = oldSeen[j];
+			size++;
+		}
+	}
+
+	private static int indexFor(long key, int capacity) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32) & (capacity - 1);
+	}
+
+}
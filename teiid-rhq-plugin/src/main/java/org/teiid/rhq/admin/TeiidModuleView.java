@@ -24,9 +24,11 @@ package org.teiid.rhq.admin;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -60,8 +62,68 @@ public class TeiidModuleView implements PluginConstants {
 
 	// Engine statistic
 	private static final String ENGINE_STATISTIC = "ENGINE_STATISTIC"; //$NON-NLS-1$
+	private static final String ENGINE_SESSION_COUNT = "session-count"; //$NON-NLS-1$
+
+	// Worker pool statistic
+	private static final String WORKERPOOL_STATISTIC = "WORKERPOOL_STATISTIC"; //$NON-NLS-1$
+	private static final String ACTIVE_THREADS = "active-threads"; //$NON-NLS-1$
+	private static final String MAX_THREADS = "max-threads"; //$NON-NLS-1$
+	private static final String QUEUED = "queued"; //$NON-NLS-1$
+	private static final String COMPLETED_TASK_COUNT = "completed-task-count"; //$NON-NLS-1$
+
+	/**
+	 * Optional snapshot used to share DMR results across the metrics of one
+	 * collection cycle. When null, every metric read goes to the server.
+	 */
+	private final ManagementSnapshot snapshot;
+
+	/**
+	 * Optional platform-level index that serves the VDB session and request
+	 * metrics without any DMR call of their own.
+	 */
+	private final VdbActivityIndex activityIndex;
+
+	/**
+	 * Optional previous samples of the Platform counters, needed for the rate
+	 * and delta metrics.
+	 */
+	private RateTracker rateTracker;
+
+	/**
+	 * Optional tracker of finished requests, needed for the latency metrics.
+	 */
+	private RequestLatencyTracker latencyTracker;
+
+	/**
+	 * Optional runner of the materialized view refreshes, needed for the
+	 * refresh operations and metrics.
+	 */
+	private MatViewRefresher matViewRefresher;
 
 	public TeiidModuleView() {
+		this(null);
+	}
+
+	public TeiidModuleView(ManagementSnapshot snapshot) {
+		this(snapshot, null);
+	}
+
+	public TeiidModuleView(ManagementSnapshot snapshot,
+			VdbActivityIndex activityIndex) {
+		this.snapshot = snapshot;
+		this.activityIndex = activityIndex;
+	}
+
+	public void setRateTracker(RateTracker rateTracker) {
+		this.rateTracker = rateTracker;
+	}
+
+	public void setLatencyTracker(RequestLatencyTracker latencyTracker) {
+		this.latencyTracker = latencyTracker;
+	}
+
+	public void setMatViewRefresher(MatViewRefresher matViewRefresher) {
+		this.matViewRefresher = matViewRefresher;
 	}
 
 	/*
@@ -82,13 +144,77 @@ public class TeiidModuleView implements PluginConstants {
 		return resultObject;
 	}
 
+	/**
+	 * Queue, on the {@link ManagementSnapshot}, every operation needed to
+	 * serve the given Platform metrics and send them to the server as one
+	 * composite request. The metrics are then read from the snapshot as
+	 * usual with {@link #getMetric(ASConnection, String, String, String, Map)}.
+	 *
+	 * @param activityLists
+	 *            also fetch the session, request and long running request
+	 *            lists, for the {@link VdbActivityIndex}
+	 */
+	public void prefetchPlatformMetrics(Collection<String> metrics,
+			boolean activityLists) {
+		if (snapshot == null) {
+			return;
+		}
+		if (activityLists) {
+			snapshot.prefetch(Platform.Operations.GET_SESSIONS, null);
+			snapshot.prefetch(Platform.Operations.GET_REQUESTS, null);
+			snapshot.prefetch(Platform.Operations.GET_LONGRUNNINGQUERIES, null);
+		}
+		for (String metric : metrics) {
+			metric = getBaseMetric(metric);
+			// The query and long running query counts are not prefetched:
+			// the lists are only fetched whole when something needs their rows
+			if (metric
+					.equals(PluginConstants.ComponentType.Platform.Metrics.NEW_REQUEST_RATE)) {
+				snapshot.prefetch(Platform.Operations.GET_REQUESTS, null);
+			} else if (metric
+					.equals(PluginConstants.ComponentType.Platform.Metrics.NEW_SESSION_RATE)) {
+				snapshot.prefetch(Platform.Operations.GET_SESSIONS, null);
+			} else if (metric.startsWith(ENGINE_STATISTIC + ".") //$NON-NLS-1$
+					|| metric
+							.equals(PluginConstants.ComponentType.Platform.Metrics.SESSION_COUNT)) {
+				snapshot.prefetch(Platform.Operations.GET_ENGINE_STATISTICS, null);
+			} else if (metric.startsWith(WORKERPOOL_STATISTIC + ".") //$NON-NLS-1$
+					|| metric
+							.equals(PluginConstants.ComponentType.Platform.Metrics.WORKER_POOL_SATURATION)
+					|| metric
+							.equals(PluginConstants.ComponentType.Platform.Metrics.WORKER_POOL_QUEUE_WAIT)) {
+				snapshot.prefetch(Platform.Operations.GET_WORKERPOOL_STATSTICS, null);
+			} else if (metric.startsWith(PREPARED_PLAN_CACHE + ".") //$NON-NLS-1$
+					|| metric.startsWith(QUERY_SERVICE_RESULT_SET_CACHE + ".")) { //$NON-NLS-1$
+				Map<String, Object> additionalProperties = new HashMap<String, Object>();
+				additionalProperties.put(Operation.Value.CACHETYPE,
+						metric.substring(0, metric.indexOf('.')));
+				snapshot.prefetch(Platform.Operations.GET_CACHE_STATS, additionalProperties);
+			}
+		}
+		snapshot.executePending();
+	}
+
 	private Object getPlatformMetric(ASConnection connection,
 			String componentType, String metric, Map<String, Object> valueMap)
 			throws Exception {
 
 		Object resultObject = new Object();
 
-		if (metric
+		if (metric.startsWith(RateTracker.RATE_PREFIX)
+				|| metric.startsWith(RateTracker.DELTA_PREFIX)) {
+			return getDerivedMetric(connection, componentType, metric, valueMap);
+		} else if (isLatencyMetric(metric)) {
+			return latencyTracker == null || snapshot == null ? null
+					: getLatencyMetric(latencyTracker.getInterval(snapshot
+							.getTimestamp()), metric);
+		} else if (metric
+				.equals(PluginConstants.ComponentType.Platform.Metrics.NEW_REQUEST_RATE)) {
+			return getNewRequestRate();
+		} else if (metric
+				.equals(PluginConstants.ComponentType.Platform.Metrics.NEW_SESSION_RATE)) {
+			return getNewSessionRate();
+		} else if (metric
 				.equals(PluginConstants.ComponentType.Platform.Metrics.QUERY_COUNT)) {
 			resultObject = new Double(getQueryCount(connection, null, null)
 					.doubleValue());
@@ -102,6 +228,14 @@ public class TeiidModuleView implements PluginConstants {
 					null, null).doubleValue());
 		} else if (metric.startsWith(ENGINE_STATISTIC + ".")) { //$NON-NLS-1$ 
 			return getEngineStatisticProperty(connection, metric);
+		} else if (metric.startsWith(WORKERPOOL_STATISTIC + ".")) { //$NON-NLS-1$
+			return getWorkerPoolProperty(connection, metric);
+		} else if (metric
+				.equals(PluginConstants.ComponentType.Platform.Metrics.WORKER_POOL_SATURATION)) {
+			return getWorkerPoolSaturation(connection);
+		} else if (metric
+				.equals(PluginConstants.ComponentType.Platform.Metrics.WORKER_POOL_QUEUE_WAIT)) {
+			return getWorkerPoolQueueWait(connection);
 		} else if (metric.startsWith(PREPARED_PLAN_CACHE + ".") //$NON-NLS-1$
 				|| metric.startsWith(QUERY_SERVICE_RESULT_SET_CACHE + ".")) { //$NON-NLS-1$
 			return getCacheProperty(connection, metric);
@@ -109,6 +243,94 @@ public class TeiidModuleView implements PluginConstants {
 		return resultObject;
 	}
 
+	/**
+	 * Strip the rate and delta prefixes from a metric name, leaving the name
+	 * of the counter it is derived from.
+	 */
+	private static String getBaseMetric(String metric) {
+		if (metric.startsWith(RateTracker.RATE_PREFIX)) {
+			return metric.substring(RateTracker.RATE_PREFIX.length());
+		}
+		if (metric.startsWith(RateTracker.DELTA_PREFIX)) {
+			return metric.substring(RateTracker.DELTA_PREFIX.length());
+		}
+		return metric;
+	}
+
+	/**
+	 * Per-second rate (<code>RATE.</code>) or interval delta (
+	 * <code>DELTA.</code>) of a cumulative Platform counter, for example
+	 * <code>RATE.ENGINE_STATISTIC.buffermgr-disk-read-count</code>.
+	 * 
+	 * @return the derived value, or null on the first collection, when there
+	 *         is no previous sample yet
+	 */
+	private Object getDerivedMetric(ASConnection connection,
+			String componentType, String metric, Map<String, Object> valueMap)
+			throws Exception {
+		if (rateTracker == null || snapshot == null) {
+			return null;
+		}
+		String baseMetric = getBaseMetric(metric);
+		Object value = getPlatformMetric(connection, componentType, baseMetric,
+				valueMap);
+		if (!(value instanceof Number)) {
+			return null;
+		}
+		// Keyed by the derived metric, as RATE. and DELTA. of one counter
+		// have their own schedules and each measures its own interval
+		RateTracker.Sample sample = rateTracker.update(metric,
+				((Number) value).doubleValue(), snapshot.getTimestamp());
+		if (metric.startsWith(RateTracker.RATE_PREFIX)) {
+			return sample.getRate();
+		}
+		return sample.getDelta();
+	}
+
+	/**
+	 * @return requests per second that were started since the previous
+	 *         collection, or null when not known yet. Only requests listed by
+	 *         a collection are seen, so this is a lower bound: the server has
+	 *         no counter of all requests.
+	 */
+	private Double getNewRequestRate() {
+		if (rateTracker == null || snapshot == null) {
+			return null;
+		}
+		List<Map<String, Object>> requests = snapshot.getRequests();
+		if (requests == null) {
+			return null;
+		}
+		List<String> ids = new ArrayList<String>(requests.size());
+		for (Map<String, Object> request : requests) {
+			ids.add(String.valueOf(request.get(VdbActivityIndex.SESSION_ID))
+					+ '.' + String.valueOf(request.get(Operation.Value.REQUEST_ID)));
+		}
+		return rateTracker.updateIds(Platform.Metrics.NEW_REQUEST_RATE, ids,
+				snapshot.getTimestamp()).getRate();
+	}
+
+	/**
+	 * @return sessions per second that were opened since the previous
+	 *         collection, or null when not known yet. A lower bound, as for
+	 *         {@link #getNewRequestRate()}.
+	 */
+	private Double getNewSessionRate() {
+		if (rateTracker == null || snapshot == null) {
+			return null;
+		}
+		List<Map<String, Object>> sessions = snapshot.getSessions();
+		if (sessions == null) {
+			return null;
+		}
+		List<String> ids = new ArrayList<String>(sessions.size());
+		for (Map<String, Object> session : sessions) {
+			ids.add(String.valueOf(session.get(VdbActivityIndex.SESSION_ID)));
+		}
+		return rateTracker.updateIds(Platform.Metrics.NEW_SESSION_RATE, ids,
+				snapshot.getTimestamp()).getRate();
+	}
+
 	private Object getCacheProperty(ASConnection connection, String metric) {
 		int dotIndex = metric.indexOf('.');
 		String cacheType = metric.substring(0, dotIndex);
@@ -125,6 +347,135 @@ public class TeiidModuleView implements PluginConstants {
 		return map.get(property);
 	}
 
+	/**
+	 * @return true for the request latency metrics, which share their names
+	 *         between the Platform and the VDBs
+	 */
+	public static boolean isLatencyMetric(String metric) {
+		return metric.equals(Platform.Metrics.REQUEST_LATENCY_P50)
+				|| metric.equals(Platform.Metrics.REQUEST_LATENCY_P95)
+				|| metric.equals(Platform.Metrics.REQUEST_LATENCY_P99)
+				|| metric.equals(Platform.Metrics.REQUEST_LATENCY_MAX)
+				|| metric.equals(Platform.Metrics.COMPLETED_REQUESTS);
+	}
+
+	private Double getLatencyMetric(LatencyHistogram histogram, String metric) {
+		if (histogram == null) {
+			// first read, no interval yet
+			return null;
+		}
+		if (metric.equals(Platform.Metrics.COMPLETED_REQUESTS)) {
+			return new Double(histogram.getCount());
+		}
+		if (histogram.getCount() == 0) {
+			// nothing finished in the interval
+			return null;
+		}
+		if (metric.equals(Platform.Metrics.REQUEST_LATENCY_P50)) {
+			return new Double(histogram.getValueAtPercentile(50));
+		} else if (metric.equals(Platform.Metrics.REQUEST_LATENCY_P95)) {
+			return new Double(histogram.getValueAtPercentile(95));
+		} else if (metric.equals(Platform.Metrics.REQUEST_LATENCY_P99)) {
+			return new Double(histogram.getValueAtPercentile(99));
+		}
+		return new Double(histogram.getMax());
+	}
+
+	public static boolean isMatViewRefreshMetric(String metric) {
+		return metric.equals(VDB.Metrics.MATVIEW_REFRESHES_RUNNING)
+				|| metric.equals(VDB.Metrics.MATVIEW_REFRESH_TIME)
+				|| metric.equals(VDB.Metrics.MATVIEW_ROWS_LOADED);
+	}
+
+	/**
+	 * @return the number of running refreshes of the VDB, the time the
+	 *         longest of them has been running, or the rows loaded by the
+	 *         latest refresh that succeeded
+	 */
+	private Double getMatViewRefreshMetric(ASConnection connection,
+			String vdbName, String vdbVersion, String metric) {
+		if (matViewRefresher == null) {
+			return null;
+		}
+		matViewRefresher.checkTimeouts(connection, vdbName, vdbVersion);
+		int running = 0;
+		long longest = 0;
+		Integer rowsLoaded = null;
+		for (MatViewRefresh refresh : matViewRefresher.getRefreshes(vdbName, vdbVersion)) {
+			if (refresh.isRunning()) {
+				running++;
+				longest = Math.max(longest, refresh.getElapsedTime());
+			} else if (MatViewRefresh.SUCCEEDED.equals(refresh.getState())
+					&& refresh.getRowsLoaded() != null) {
+				// started last among the succeeded ones
+				rowsLoaded = refresh.getRowsLoaded();
+			}
+		}
+		if (metric.equals(VDB.Metrics.MATVIEW_REFRESHES_RUNNING)) {
+			return new Double(running);
+		} else if (metric.equals(VDB.Metrics.MATVIEW_REFRESH_TIME)) {
+			return new Double(longest);
+		}
+		return rowsLoaded == null ? null : new Double(rowsLoaded.doubleValue());
+	}
+
+	private Object getWorkerPoolProperty(ASConnection connection,
+			String metric) {
+		int dotIndex = metric.indexOf('.');
+		String property = metric.substring(dotIndex + 1);
+		Map<String, Object> map = getWorkerPoolStatistic(connection);
+		return map == null ? null : map.get(property);
+	}
+
+	/**
+	 * @return active threads as a percentage of the maximum number of threads
+	 *         of the worker pool
+	 */
+	private Double getWorkerPoolSaturation(ASConnection connection) {
+		Map<String, Object> map = getWorkerPoolStatistic(connection);
+		if (map == null || !(map.get(ACTIVE_THREADS) instanceof Number)
+				|| !(map.get(MAX_THREADS) instanceof Number)) {
+			return null;
+		}
+		double maxThreads = ((Number) map.get(MAX_THREADS)).doubleValue();
+		if (maxThreads <= 0) {
+			return null;
+		}
+		return new Double(((Number) map.get(ACTIVE_THREADS)).doubleValue()
+				* 100 / maxThreads);
+	}
+
+	/**
+	 * Estimates how long, in milliseconds, a newly queued task waits for a
+	 * thread: the current queue length divided by the rate at which the pool
+	 * has been completing tasks since the previous collection.
+	 * 
+	 * @return the estimate, or null when no completion rate is known yet
+	 */
+	private Double getWorkerPoolQueueWait(ASConnection connection) {
+		if (rateTracker == null || snapshot == null) {
+			return null;
+		}
+		Map<String, Object> map = getWorkerPoolStatistic(connection);
+		if (map == null || !(map.get(QUEUED) instanceof Number)
+				|| !(map.get(COMPLETED_TASK_COUNT) instanceof Number)) {
+			return null;
+		}
+		double queued = ((Number) map.get(QUEUED)).doubleValue();
+		// its own sample of the counter, for the interval of this schedule
+		Double rate = rateTracker.update(
+				PluginConstants.ComponentType.Platform.Metrics.WORKER_POOL_QUEUE_WAIT,
+				((Number) map.get(COMPLETED_TASK_COUNT)).doubleValue(),
+				snapshot.getTimestamp()).getRate();
+		if (queued == 0) {
+			return new Double(0);
+		}
+		if (rate == null || rate.doubleValue() <= 0) {
+			return null;
+		}
+		return new Double(queued * 1000 / rate.doubleValue());
+	}
+
 	private Object getVdbMetric(ASConnection connection, String componentType,
 			String identifier, String metric, Map<String, Object> valueMap)
 			throws Exception {
@@ -138,7 +489,26 @@ public class TeiidModuleView implements PluginConstants {
 			resultObject = getErrorCount(connection, vdbName, vdbVersion);
 		} else if (metric
 				.equals(PluginConstants.ComponentType.VDB.Metrics.STATUS)) {
-			resultObject = getVDBStatus(connection, vdbName, vdbVersion);
+			resultObject = getVdbMap(connection, vdbName, vdbVersion).get(
+					VDBComponent.STATUS);
+		} else if (isLatencyMetric(metric)) {
+			resultObject = latencyTracker == null || snapshot == null ? null
+					: getLatencyMetric(latencyTracker.getInterval(vdbName,
+							vdbVersion, snapshot.getTimestamp()), metric);
+		} else if (isMatViewRefreshMetric(metric)) {
+			resultObject = getMatViewRefreshMetric(connection, vdbName, vdbVersion, metric);
+		} else if (activityIndex != null
+				&& metric.equals(PluginConstants.ComponentType.VDB.Metrics.QUERY_COUNT)) {
+			resultObject = new Double(activityIndex.getRequestCount(vdbName,
+					vdbVersion));
+		} else if (activityIndex != null
+				&& metric.equals(PluginConstants.ComponentType.VDB.Metrics.SESSION_COUNT)) {
+			resultObject = new Double(activityIndex.getSessionCount(vdbName,
+					vdbVersion));
+		} else if (activityIndex != null
+				&& metric.equals(PluginConstants.ComponentType.VDB.Metrics.LONG_RUNNING_QUERIES)) {
+			resultObject = new Double(activityIndex.getLongRunningRequestCount(
+					vdbName, vdbVersion));
 		} else if (metric
 				.equals(PluginConstants.ComponentType.VDB.Metrics.QUERY_COUNT)) {
 			resultObject = new Double(getQueryCount(connection, vdbName,
@@ -185,11 +555,27 @@ public class TeiidModuleView implements PluginConstants {
 			resultObject = getLongRunningQueries(connection);
 			operationResult.setContent(resultObject);
 		} else if (operationName.equals(Platform.Operations.GET_SESSIONS)) {
-			resultObject = getSessions(connection, null, null);
+			ActivityQuery query = new ActivityQuery(valueMap);
+			resultObject = getSessions(connection, query.getVdbName(), query.getVdbVersion(), query);
 			operationResult.setContent(resultObject);
 		} else if (operationName.equals(Platform.Operations.GET_REQUESTS)) {
-			resultObject = getRequests(connection, null, null);
+			ActivityQuery query = new ActivityQuery(valueMap);
+			resultObject = getRequests(connection, query.getVdbName(), query.getVdbVersion(), query);
 			operationResult.setContent(resultObject);
+		} else if (operationName.equals(Platform.Operations.KILL_REQUESTS)) {
+			ActivityQuery query = new ActivityQuery(valueMap);
+			if (!query.hasCriteria()) {
+				operationResult.setContent("failure - at least one criterion is required"); //$NON-NLS-1$
+			} else {
+				operationResult.setContent(cancelRequests(connection, query.getVdbName(), query.getVdbVersion(), query));
+			}
+		} else if (operationName.equals(Platform.Operations.KILL_SESSIONS)) {
+			ActivityQuery query = new ActivityQuery(valueMap);
+			if (!query.hasCriteria()) {
+				operationResult.setContent("failure - at least one criterion is required"); //$NON-NLS-1$
+			} else {
+				operationResult.setContent(terminateSessions(connection, query.getVdbName(), query.getVdbVersion(), query));
+			}
 		} else if (operationName.equals(Platform.Operations.GET_TRANSACTIONS)) {
 			resultObject = getTransactions(connection);
 			operationResult.setContent(resultObject);
@@ -249,11 +635,25 @@ public class TeiidModuleView implements PluginConstants {
 				.get(PluginConstants.ComponentType.VDB.VERSION);
 
 		if (operationName.equals(VDB.Operations.GET_SESSIONS)) {
-			resultObject = getSessions(connection, vdbName, vdbVersion);
+			resultObject = getSessions(connection, vdbName, vdbVersion, new ActivityQuery(valueMap));
 			operationResult.setContent(resultObject);
 		} else if (operationName.equals(VDB.Operations.GET_REQUESTS)) {
-			resultObject = getRequests(connection, vdbName, vdbVersion);
+			resultObject = getRequests(connection, vdbName, vdbVersion, new ActivityQuery(valueMap));
 			operationResult.setContent(resultObject);
+		} else if (operationName.equals(VDB.Operations.KILL_REQUESTS)) {
+			ActivityQuery query = new ActivityQuery(valueMap);
+			if (!query.hasCriteria()) {
+				operationResult.setContent("failure - at least one criterion is required"); //$NON-NLS-1$
+			} else {
+				operationResult.setContent(cancelRequests(connection, vdbName, vdbVersion, query));
+			}
+		} else if (operationName.equals(VDB.Operations.KILL_SESSIONS)) {
+			ActivityQuery query = new ActivityQuery(valueMap);
+			if (!query.hasCriteria()) {
+				operationResult.setContent("failure - at least one criterion is required"); //$NON-NLS-1$
+			} else {
+				operationResult.setContent(terminateSessions(connection, vdbName, vdbVersion, query));
+			}
 		} else if (operationName.equals(VDB.Operations.GET_MATVIEWS)) {
 			resultObject = executeMaterializedViewQuery(connection, vdbName,
 					vdbVersion);
@@ -279,17 +679,55 @@ public class TeiidModuleView implements PluginConstants {
 				operationResult.setContent("failure - see log for details"); //$NON-NLS-1$
 			}
 
+		} else if (matViewRefresher == null
+				&& (operationName.equals(VDB.Operations.RELOAD_MATVIEW)
+						|| operationName.equals(VDB.Operations.GET_MATVIEW_REFRESHES)
+						|| operationName.equals(VDB.Operations.CANCEL_MATVIEW_REFRESH)
+						|| operationName.equals(VDB.Operations.REFRESH_MATVIEWS))) {
+			operationResult.setContent("failure - materialized view refreshes are not available"); //$NON-NLS-1$
 		} else if (operationName.equals(VDB.Operations.RELOAD_MATVIEW)) {
-			Result result = reloadMaterializedView(connection, vdbName,
-					Integer.parseInt(vdbVersion),
+			Long timeout = (Long) valueMap.get(Operation.Value.MATVIEW_REFRESH_TIMEOUT);
+			MatViewRefresh refresh = matViewRefresher.start(connection, vdbName, vdbVersion,
 					(String) valueMap.get(Operation.Value.MATVIEW_SCHEMA),
 					(String) valueMap.get(Operation.Value.MATVIEW_TABLE),
-					(Boolean) valueMap.get(Operation.Value.INVALIDATE_MATVIEW));
-
-			if (result == null || !result.isSuccess()) {
-				operationResult.setContent("failure - see log for details"); //$NON-NLS-1$
+					Boolean.TRUE.equals(valueMap.get(Operation.Value.INVALIDATE_MATVIEW)),
+					timeout == null ? 0 : timeout.longValue());
+			operationResult.setContent("refresh of " + refresh.getMatView() + " " //$NON-NLS-1$ //$NON-NLS-2$
+					+ refresh.getState().toLowerCase() + ", handle " + refresh.getHandle()); //$NON-NLS-1$
+		} else if (operationName.equals(VDB.Operations.GET_MATVIEW_REFRESHES)) {
+			matViewRefresher.checkTimeouts(connection, vdbName, vdbVersion);
+			String handle = (String) valueMap.get(Operation.Value.MATVIEW_REFRESH_HANDLE);
+			MatViewRefreshBatch batch = matViewRefresher.getBatch(handle);
+			if (batch != null && batch.getVdbName().equals(vdbName)
+					&& batch.getVdbVersion().equals(vdbVersion)) {
+				resultObject = batch.getReport();
+			} else {
+				resultObject = new ArrayList<Map<String, Object>>();
+				for (MatViewRefresh refresh : matViewRefresher.getRefreshes(vdbName, vdbVersion)) {
+					if (handle == null || handle.trim().equals(refresh.getHandle())) {
+						resultObject.add(refresh.getStatus());
+					}
+				}
+			}
+			operationResult.setContent(resultObject);
+		} else if (operationName.equals(VDB.Operations.REFRESH_MATVIEWS)) {
+			refreshMaterializedViews(connection, operationResult, vdbName, vdbVersion, valueMap);
+		} else if (operationName.equals(VDB.Operations.CANCEL_MATVIEW_REFRESH)) {
+			String handle = (String) valueMap.get(Operation.Value.MATVIEW_REFRESH_HANDLE);
+			MatViewRefreshBatch batch = matViewRefresher.getBatch(handle);
+			MatViewRefresh refresh = matViewRefresher.get(handle);
+			if (batch != null && batch.getVdbName().equals(vdbName)
+					&& batch.getVdbVersion().equals(vdbVersion)) {
+				matViewRefresher.cancel(batch);
+				operationResult.setContent("refresh batch " + batch.getHandle() + " cancelled"); //$NON-NLS-1$ //$NON-NLS-2$
+			} else if (refresh == null || !refresh.getVdbName().equals(vdbName)
+					|| !refresh.getVdbVersion().equals(vdbVersion)) {
+				operationResult.setContent("failure - no refresh of this VDB with this handle"); //$NON-NLS-1$
+			} else if (matViewRefresher.cancel(connection, refresh)) {
+				operationResult.setContent("refresh of " + refresh.getMatView() + " cancelled"); //$NON-NLS-1$ //$NON-NLS-2$
 			} else {
-				operationResult.setContent("data successfully refreshed!"); //$NON-NLS-1$
+				operationResult.setContent("refresh of " + refresh.getMatView() + " already " //$NON-NLS-1$ //$NON-NLS-2$
+						+ refresh.getState().toLowerCase());
 			}
 		}
 
@@ -353,26 +791,104 @@ public class TeiidModuleView implements PluginConstants {
 
 	}
 
-	protected Result reloadMaterializedView(ASConnection connection,
-			String vdbName, int vdbVersion, String schema, String table,
-			Boolean invalidate) {
+	/**
+	 * Start the refresh of the given materialized views of the VDB, or all of
+	 * them, as a {@link MatViewRefreshBatch} ordered by the view definitions.
+	 * The report of the batch is returned at once, or when it is finished if
+	 * the caller waits for it, but no later than the refresh timeout.
+	 */
+	protected void refreshMaterializedViews(ASConnection connection,
+			ExecutedResult operationResult, String vdbName, String vdbVersion,
+			Map<String, Object> valueMap) throws Exception {
+
+		List<Map<String, Object>> matViewList = executeMaterializedViewQuery(connection, vdbName, vdbVersion);
+		if (matViewList == null) {
+			operationResult.setContent("failure - the materialized views could not be listed"); //$NON-NLS-1$
+			return;
+		}
+		Map<String, String> matViews = new LinkedHashMap<String, String>();
+		for (Map<String, Object> matView : matViewList) {
+			String name = matView.get(MatViewDependencies.SCHEMA_NAME) + "." //$NON-NLS-1$
+					+ matView.get(MatViewDependencies.NAME);
+			matViews.put(name.toLowerCase(), name);
+		}
+
+		// the requested views, by their names in the VDB
+		List<String> selected = new ArrayList<String>();
+		String views = (String) valueMap.get(Operation.Value.MATVIEW_LIST);
+		if (views == null || views.trim().length() == 0) {
+			selected.addAll(matViews.values());
+		} else {
+			for (String view : views.split("[,\\s]+")) { //$NON-NLS-1$
+				if (view.length() == 0) {
+					continue;
+				}
+				String name = matViews.get(view.toLowerCase());
+				if (name == null) {
+					operationResult.setContent("failure - not a materialized view of this VDB: " + view); //$NON-NLS-1$
+					return;
+				}
+				if (!selected.contains(name)) {
+					selected.add(name);
+				}
+			}
+		}
 
-		Result result = null;
-		String matView = schema + "." + table; //$NON-NLS-1$
-		String query = PluginConstants.Operation.Value.MAT_VIEW_REFRESH;
-		query = query.replace("param1", matView); //$NON-NLS-1$
-		query = query.replace("param2", invalidate.toString()); //$NON-NLS-1$
 		Map<String, Object> additionalProperties = new LinkedHashMap<String, Object>();
 		additionalProperties.put(Operation.Value.VDB_NAME, vdbName);
 		additionalProperties.put(Operation.Value.VDB_VERSION, vdbVersion);
+		additionalProperties.put(Operation.Value.SQL_QUERY, MatViewDependencies.VIEW_QUERY);
+		Result result = executeOperation(connection, Platform.Operations.EXECUTE_QUERY,
+				DmrUtil.getTeiidAddress(), additionalProperties);
+		Map<String, Set<String>> dependencies;
+		if (result != null && result.isSuccess() && result.getResult() instanceof List) {
+			dependencies = MatViewDependencies.order(MatViewDependencies.resolve(
+					(List<Map<String, Object>>) result.getResult(), selected));
+		} else {
+			LOG.warn("View definitions of VDB " + vdbName + "." + vdbVersion //$NON-NLS-1$ //$NON-NLS-2$
+					+ " could not be read, refreshing its materialized views one at a time: " //$NON-NLS-1$
+					+ (result == null ? null : result.getFailureDescription()));
+			dependencies = MatViewDependencies.sequential(selected);
+		}
+
+		Integer parallelLimit = (Integer) valueMap.get(Operation.Value.PARALLEL_LIMIT);
+		Long timeout = (Long) valueMap.get(Operation.Value.MATVIEW_REFRESH_TIMEOUT);
+		MatViewRefreshBatch batch = matViewRefresher.startBatch(connection, vdbName, vdbVersion,
+				dependencies, parallelLimit == null ? matViewRefresher.getThreads() : parallelLimit.intValue(),
+				Boolean.TRUE.equals(valueMap.get(Operation.Value.INVALIDATE_MATVIEW)),
+				timeout == null ? 0 : timeout.longValue());
+		if (Boolean.TRUE.equals(valueMap.get(Operation.Value.WAIT_UNTIL_FINISHED))) {
+			// the views still running after the timeout are reported as such
+			if (!batch.await(timeout == null || timeout.longValue() <= 0 ? matViewRefresher.getTimeout()
+					: timeout.longValue())) {
+				LOG.info("Materialized view refresh batch " + batch.getHandle() //$NON-NLS-1$
+						+ " not finished within the timeout, returning its current state"); //$NON-NLS-1$
+			}
+		}
+		operationResult.setContent(batch.getReport());
+	}
+
+	/**
+	 * Run <code>SYSADMIN.refreshMatView</code> for the view of the refresh.
+	 * Blocks until the server is done or the timeout of the refresh has
+	 * passed, so it is only called on the threads of the
+	 * {@link MatViewRefresher}.
+	 */
+	static Result executeMatViewRefresh(ASConnection connection,
+			MatViewRefresh refresh) {
+
+		String query = PluginConstants.Operation.Value.MAT_VIEW_REFRESH;
+		query = query.replace("param1", refresh.getMatView()); //$NON-NLS-1$
+		query = query.replace("param2", String.valueOf(refresh.isInvalidate())); //$NON-NLS-1$
+		Map<String, Object> additionalProperties = new LinkedHashMap<String, Object>();
+		additionalProperties.put(Operation.Value.VDB_NAME, refresh.getVdbName());
+		additionalProperties.put(Operation.Value.VDB_VERSION, Integer.valueOf(refresh.getVdbVersion()));
 		additionalProperties.put(Operation.Value.SQL_QUERY, query);
-		additionalProperties.put(Operation.Value.TIMEOUT_IN_MILLI, "9999999");
+		additionalProperties.put(Operation.Value.TIMEOUT_IN_MILLI, String.valueOf(refresh.getTimeout()));
 
-		result = executeOperation(connection, Operations.EXECUTE_QUERY,
+		return executeOperation(connection, Operations.EXECUTE_QUERY,
 				DmrUtil.getTeiidAddress(), additionalProperties);
 
-		return result;
-
 	}
 
 	protected List<Map<String, Object>> getTransactions(ASConnection connection) {
@@ -385,15 +901,6 @@ public class TeiidModuleView implements PluginConstants {
 
 	}
 
-	public static String getVDBStatus(ASConnection connection, String vdbName,
-			String vdbVersion) {
-
-		Map<String, ?> vdbMap = VDBComponent.getVdbMap(connection, vdbName,
-				vdbVersion);
-		return (String) vdbMap.get(VDBComponent.STATUS);
-
-	}
-
 	//
 	// /**
 	// * @param mc
@@ -416,57 +923,117 @@ public class TeiidModuleView implements PluginConstants {
 	private Integer getQueryCount(ASConnection connection, String vdbName,
 			String vdbVersion) throws Exception {
 
-		Address address = DmrUtil.getTeiidAddress();
-		Result result;
 		if (vdbName==null){
-			result = executeOperation(connection,
-					Platform.Operations.GET_REQUESTS, address, null);
-		}else{
-			Map<String, Object> additionalProperties = new LinkedHashMap<String, Object>();
-			additionalProperties.put(Operation.Value.VDB_NAME, vdbName);
-			additionalProperties.put(Operation.Value.VDB_VERSION, vdbVersion);
-			result = executeOperation(connection,
-					VDB.Operations.GET_REQUESTS, address, additionalProperties);
+			return countMetricOperation(connection,
+					Platform.Operations.GET_REQUESTS, null);
 		}
-
-		return getArraySize(result);
+		Map<String, Object> additionalProperties = new LinkedHashMap<String, Object>();
+		additionalProperties.put(Operation.Value.VDB_NAME, vdbName);
+		additionalProperties.put(Operation.Value.VDB_VERSION, vdbVersion);
+		return countMetricOperation(connection,
+				VDB.Operations.GET_REQUESTS, additionalProperties);
 
 	}
 
 	private Integer getSessionCount(ASConnection connection, String vdbName,
 			String vdbVersion) throws Exception {
 
-		Address address = DmrUtil.getTeiidAddress();
-		Result result = executeOperation(connection,
-				Platform.Operations.GET_SESSIONS, address, null);
-		int count = 0;
+		if (vdbName == null) {
+			// The engine keeps the total, no need to list the sessions
+			Map<String, Object> stats = getEngineStatistic(connection);
+			Object sessionCount = stats == null ? null : stats.get(ENGINE_SESSION_COUNT);
+			if (sessionCount instanceof Number) {
+				return ((Number) sessionCount).intValue();
+			}
+			return countMetricOperation(connection,
+					Platform.Operations.GET_SESSIONS, null);
+		}
 
-		// If this is at the VDB level, look for instances of the VDB
-		count = getCountForVdb(vdbName, result, count);
+		Result result = executeMetricOperation(connection,
+				Platform.Operations.GET_SESSIONS, null);
+		int count = 0;
 
-		return vdbName != null ? count : getArraySize(result);
+		// Look for instances of the VDB
+		return getCountForVdb(vdbName, result, count);
 	}
 
+	/**
+	 * List the sessions, of the given VDB version if any, with the filter and
+	 * page of the query applied.
+	 */
 	private List<Map<String, Object>> getSessions(ASConnection connection,
-			String vdbName, String vdbVersion) throws Exception {
+			String vdbName, String vdbVersion, ActivityQuery query) throws Exception {
+
+		List<Map<String, Object>> sessions = getSessionList(connection, vdbName, vdbVersion);
+		if (query.hasIdleFilter() && sessions != null && !sessions.isEmpty()) {
+			// A session waiting for a long request does not ping
+			query.setBusySessions(getBusySessions(connection));
+		}
+		return query.apply(sessions, null, ActivityQuery.CREATED_TIME);
+	}
+
+	/**
+	 * @return the ids of the sessions with requests running
+	 */
+	private Set<Object> getBusySessions(ASConnection connection) throws Exception {
+		Result result = executeOperation(connection,
+				Platform.Operations.GET_REQUESTS, DmrUtil.getTeiidAddress(), null);
+		if (result == null || !result.isSuccess()) {
+			throw new Exception("Cannot read the requests to find the idle sessions: " //$NON-NLS-1$
+					+ (result == null ? null : result.getFailureDescription()));
+		}
+		Set<Object> busySessions = new HashSet<Object>();
+		List<Map<String, Object>> requests = (List<Map<String, Object>>) result.getResult();
+		if (requests != null) {
+			for (Map<String, Object> request : requests) {
+				busySessions.add(request.get(Operation.Value.SESSION_ID));
+			}
+		}
+		return busySessions;
+	}
+
+	private List<Map<String, Object>> getSessionList(ASConnection connection,
+			String vdbName, String vdbVersion) {
 
 		Address address = DmrUtil.getTeiidAddress();
+		if (vdbName == null) {
+			return (List<Map<String, Object>>) executeOperation(connection,
+					Platform.Operations.GET_SESSIONS, address, null).getResult();
+		}
+
+		// Let the server select the sessions of the VDB
+		Map<String, Object> additionalProperties = new LinkedHashMap<String, Object>();
+		additionalProperties.put(Operation.Value.VDB_NAME, vdbName);
+		if (vdbVersion != null) {
+			additionalProperties.put(Operation.Value.VDB_VERSION, vdbVersion);
+		}
 		Result result = executeOperation(connection,
+				Platform.Operations.GET_SESSIONS, address, additionalProperties);
+		if (result != null && result.isSuccess()) {
+			return (List<Map<String, Object>>) result.getResult();
+		}
+
+		// Servers without the VDB arguments list all sessions
+		result = executeOperation(connection,
 				Platform.Operations.GET_SESSIONS, address, null);
 		List<Map<String, Object>> vdbList = new ArrayList<Map<String, Object>>();
-
-		getVdbList(vdbName, result, vdbList);
-
-		return vdbName != null ? vdbList : (List<Map<String, Object>>) result
-				.getResult();
+		getVdbList(vdbName, vdbVersion, result, vdbList);
+		return vdbList;
 	}
 
+	/**
+	 * List the requests, of the given VDB version if any, with the filter and
+	 * page of the query applied. The sessions are only read if the query
+	 * filters on their user or application.
+	 */
 	protected List<Map<String, Object>> getRequests(ASConnection connection,
-			String vdbName, String vdbVersion) {
+			String vdbName, String vdbVersion, ActivityQuery query) {
 
 		Address address = DmrUtil.getTeiidAddress();
 		Result result;
-		if (vdbName==null){
+		// All versions of a VDB are selected through their sessions
+		boolean allVersions = vdbName != null && vdbVersion == null;
+		if (vdbName==null || allVersions){
 			result = executeOperation(connection,
 					Platform.Operations.GET_REQUESTS, address, null);
 		}else{
@@ -477,18 +1044,132 @@ public class TeiidModuleView implements PluginConstants {
 					VDB.Operations.GET_REQUESTS, address, additionalProperties);
 		}
 
-		return (List<Map<String, Object>>) result.getResult();
+		Map<Object, Map<String, Object>> sessions = null;
+		if (query.hasSessionFilter() || allVersions) {
+			sessions = new HashMap<Object, Map<String, Object>>();
+			List<Map<String, Object>> sessionList = getSessionList(connection, vdbName, vdbVersion);
+			if (sessionList != null) {
+				for (Map<String, Object> session : sessionList) {
+					sessions.put(session.get(Operation.Value.SESSION_ID), session);
+				}
+			}
+		}
+		List<Map<String, Object>> requests = (List<Map<String, Object>>) result.getResult();
+		if (allVersions && requests != null) {
+			List<Map<String, Object>> vdbRequests = new ArrayList<Map<String, Object>>();
+			for (Map<String, Object> request : requests) {
+				if (sessions.containsKey(request.get(Operation.Value.SESSION_ID))) {
+					vdbRequests.add(request);
+				}
+			}
+			requests = vdbRequests;
+		}
+		return query.apply(requests, sessions, ActivityQuery.START_TIME);
+
+	}
+
+	/**
+	 * Cancel the user requests selected by the query with one composite
+	 * operation.
+	 *
+	 * @return the outcome of the cancel of each selected request
+	 */
+	protected List<Map<String, Object>> cancelRequests(ASConnection connection,
+			String vdbName, String vdbVersion, ActivityQuery query) {
+
+		// A user request cancels its source requests with it
+		query.setUserRequestsOnly(true);
+		List<Map<String, Object>> requests = getRequests(connection, vdbName, vdbVersion, query);
+		List<Map<String, Object>> report = new ArrayList<Map<String, Object>>();
+		if (requests == null || requests.isEmpty()) {
+			return report;
+		}
+
+		Address address = DmrUtil.getTeiidAddress();
+		List<org.rhq.modules.plugins.jbossas7.json.Operation> steps = new ArrayList<org.rhq.modules.plugins.jbossas7.json.Operation>();
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (Map<String, Object> request : requests) {
+			org.rhq.modules.plugins.jbossas7.json.Operation op = new org.rhq.modules.plugins.jbossas7.json.Operation(
+					Platform.Operations.KILL_REQUEST, address);
+			op.addAdditionalProperty(Operation.Value.REQUEST_ID, request.get(Operation.Value.REQUEST_ID));
+			op.addAdditionalProperty(Operation.Value.SESSION, request.get(Operation.Value.SESSION_ID));
+			steps.add(op);
+
+			Map<String, Object> row = new LinkedHashMap<String, Object>();
+			row.put(Operation.Value.REQUEST_ID, request.get(Operation.Value.REQUEST_ID));
+			row.put(Operation.Value.SESSION_ID, request.get(Operation.Value.SESSION_ID));
+			row.put(ActivityQuery.START_TIME, request.get(ActivityQuery.START_TIME));
+			row.put(ActivityQuery.COMMAND, request.get(ActivityQuery.COMMAND));
+			rows.add(row);
+		}
+
+		List<Result> results = BulkOperation.execute(connection, steps);
+		int cancelled = 0;
+		for (int i = 0; i < rows.size(); i++) {
+			report.add(BulkOperation.getReportRow(rows.get(i), results.get(i)));
+			if (results.get(i).isSuccess()) {
+				cancelled++;
+			}
+		}
+		LOG.info("Cancelled " + cancelled + " of " + steps.size() + " requests"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		return report;
+	}
+
+	/**
+	 * Terminate the sessions selected by the query with one composite
+	 * operation.
+	 *
+	 * @return the outcome of the termination of each selected session
+	 */
+	protected List<Map<String, Object>> terminateSessions(ASConnection connection,
+			String vdbName, String vdbVersion, ActivityQuery query) throws Exception {
+
+		List<Map<String, Object>> sessions = getSessions(connection, vdbName, vdbVersion, query);
+		List<Map<String, Object>> report = new ArrayList<Map<String, Object>>();
+		if (sessions == null || sessions.isEmpty()) {
+			return report;
+		}
+
+		Address address = DmrUtil.getTeiidAddress();
+		List<org.rhq.modules.plugins.jbossas7.json.Operation> steps = new ArrayList<org.rhq.modules.plugins.jbossas7.json.Operation>();
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (Map<String, Object> session : sessions) {
+			org.rhq.modules.plugins.jbossas7.json.Operation op = new org.rhq.modules.plugins.jbossas7.json.Operation(
+					Platform.Operations.KILL_SESSION, address);
+			op.addAdditionalProperty(Operation.Value.SESSION, session.get(Operation.Value.SESSION_ID));
+			steps.add(op);
+
+			Map<String, Object> row = new LinkedHashMap<String, Object>();
+			row.put(Operation.Value.SESSION_ID, session.get(Operation.Value.SESSION_ID));
+			row.put(ActivityQuery.USER_NAME, session.get(ActivityQuery.USER_NAME));
+			row.put(VDBComponent.VDBNAME, session.get(VDBComponent.VDBNAME));
+			row.put(VDBComponent.VERSION, session.get(VDBComponent.VERSION));
+			row.put(ActivityQuery.CLIENT_HOST_ADDRESS, session.get(ActivityQuery.CLIENT_HOST_ADDRESS));
+			rows.add(row);
+		}
 
+		List<Result> results = BulkOperation.execute(connection, steps);
+		int terminated = 0;
+		for (int i = 0; i < rows.size(); i++) {
+			report.add(BulkOperation.getReportRow(rows.get(i), results.get(i)));
+			if (results.get(i).isSuccess()) {
+				terminated++;
+			}
+		}
+		LOG.info("Terminated " + terminated + " of " + steps.size() + " sessions"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		return report;
 	}
 
-	private void getVdbList(String vdbName, Result result,
+	private void getVdbList(String vdbName, String vdbVersion, Result result,
 			List<Map<String, Object>> vdbList) {
 		if (vdbName != null) {
 			if (result.getResult() != null) {
 				List<Map<String, Object>> list = (List<Map<String, Object>>) result
 						.getResult();
 				for (Map<String, Object> value : list) {
-					if (value.get(VDBComponent.VDBNAME).equals(vdbName)) {
+					if (value.get(VDBComponent.VDBNAME).equals(vdbName)
+							&& (vdbVersion == null || vdbVersion.equals(String
+									.valueOf(value.get(VDBComponent.VERSION))))) {
 						vdbList.add(value);
 					}
 				}
@@ -511,6 +1192,21 @@ public class TeiidModuleView implements PluginConstants {
 		return count;
 	}
 
+	/**
+	 * Count the elements of a list operation. With a
+	 * {@link ManagementSnapshot} the list is only materialized if the snapshot
+	 * already holds it for some other metric or for the activity index.
+	 */
+	private Integer countMetricOperation(ASConnection connection,
+			String operationName, Map<String, Object> additionalProperties)
+			throws Exception {
+		if (snapshot != null) {
+			return snapshot.count(operationName, additionalProperties);
+		}
+		return getArraySize(executeOperation(connection, operationName,
+				DmrUtil.getTeiidAddress(), additionalProperties));
+	}
+
 	private Integer getArraySize(Result result) throws Exception {
 		if (result.isSuccess()) {
 		} else {
@@ -526,8 +1222,7 @@ public class TeiidModuleView implements PluginConstants {
 
 		int count = 0;
 
-		Map<String, ?> vdbMap = VDBComponent.getVdbMap(connection, vdbName,
-				vdbVersion);
+		Map<String, ?> vdbMap = getVdbMap(connection, vdbName, vdbVersion);
 
 		ArrayList<Map<String, Object>> modelList = (ArrayList<Map<String, Object>>) vdbMap
 				.get(VDBComponent.MODELS);
@@ -551,9 +1246,8 @@ public class TeiidModuleView implements PluginConstants {
 
 		Map<String, Object> additionalProperties = new HashMap<String, Object>();
 		additionalProperties.put(Operation.Value.CACHETYPE, type);
-		Result result = executeOperation(connection,
-				Platform.Operations.GET_CACHE_STATS, DmrUtil.getTeiidAddress(),
-				additionalProperties);
+		Result result = executeMetricOperation(connection,
+				Platform.Operations.GET_CACHE_STATS, additionalProperties);
 
 		return (Map<String, Object>) result.getResult();
 
@@ -562,11 +1256,8 @@ public class TeiidModuleView implements PluginConstants {
 	protected Integer getLongRunningQueryCount(ASConnection connection,
 			String vdbName, String vdbVersion) throws Exception {
 
-		Address address = DmrUtil.getTeiidAddress();
-		Result result = executeOperation(connection,
-				Platform.Operations.GET_LONGRUNNINGQUERIES, address, null);
-
-		return getArraySize(result);
+		return countMetricOperation(connection,
+				Platform.Operations.GET_LONGRUNNINGQUERIES, null);
 	}
 
 	protected List<Map<String, Object>> getLongRunningQueries(
@@ -592,13 +1283,46 @@ public class TeiidModuleView implements PluginConstants {
 		return result;
 	}
 
+	protected Map<String, Object> getWorkerPoolStatistic(ASConnection connection) {
+
+		Result result = executeMetricOperation(connection,
+				Platform.Operations.GET_WORKERPOOL_STATSTICS, null);
+
+		return (Map<String, Object>) result.getResult();
+	}
+
 	protected Map<String, Object> getEngineStatistic(ASConnection connection) {
 
-		Result result = executeOperation(connection,
-				Platform.Operations.GET_ENGINE_STATISTICS,
-				DmrUtil.getTeiidAddress(), null);
+		Result result = executeMetricOperation(connection,
+				Platform.Operations.GET_ENGINE_STATISTICS, null);
 
 		return (Map<String, Object>) result.getResult();
 	}
 
+	/**
+	 * Reads the VDB through the {@link ManagementSnapshot} when there is one,
+	 * so that a cached <code>get-vdb</code> result can be used.
+	 */
+	private Map<String, Object> getVdbMap(ASConnection connection,
+			String vdbName, String vdbVersion) {
+		if (snapshot != null) {
+			return snapshot.getVdb(vdbName, vdbVersion);
+		}
+		return VDBComponent.getVdbMap(connection, vdbName, vdbVersion);
+	}
+
+	/**
+	 * Executes an operation used for metric retrieval, going through the
+	 * {@link ManagementSnapshot} when there is one so that each distinct
+	 * operation is only sent once per collection cycle.
+	 */
+	private Result executeMetricOperation(ASConnection connection,
+			String operationName, Map<String, Object> additionalProperties) {
+		if (snapshot != null) {
+			return snapshot.execute(operationName, additionalProperties);
+		}
+		return executeOperation(connection, operationName,
+				DmrUtil.getTeiidAddress(), additionalProperties);
+	}
+
 }
\ No newline at end of file
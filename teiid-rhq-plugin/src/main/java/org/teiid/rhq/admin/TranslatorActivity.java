@@ -0,0 +1,223 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.teiid.rhq.plugin.VDBComponent;
+import org.teiid.rhq.plugin.util.PluginConstants.Operation;
+
+/**
+ * Use of each translator by the deployed VDBs, computed from a
+ * <code>list-vdbs</code> result and a {@link VdbActivityIndex} without any DMR
+ * call of its own.
+ *
+ * Teiid does not report which translator a source request runs through, so
+ * each source request is attributed to its physical model by its command, as
+ * {@link ModelActivity} does, and shared evenly between the sources of that
+ * model. A source request whose command names no physical model of the VDB
+ * is shared evenly between all sources of the VDB.
+ *
+ * Instances are immutable once built.
+ */
+public class TranslatorActivity {
+
+	public static final String SOURCE_REQUEST = "source-request"; //$NON-NLS-1$
+	public static final String NODE_ID = "node-id"; //$NON-NLS-1$
+
+	private final long timestamp;
+
+	private final Map<String, Integer> modelCounts = new HashMap<String, Integer>();
+	private final Map<String, Double> activeSourceRequests = new HashMap<String, Double>();
+	private final Map<String, Double> sourceRequestRates = new HashMap<String, Double>();
+	private final boolean hasRates;
+
+	// source requests seen by this build, to find the new ones in the next
+	private final Set<String> sourceRequestKeys = new HashSet<String>();
+
+	/**
+	 * @param vdbs
+	 *            <code>list-vdbs</code> result
+	 * @param index
+	 *            sessions and requests by VDB
+	 * @param previous
+	 *            the previous build, for the rates; may be null
+	 */
+	public TranslatorActivity(List<Map<String, Object>> vdbs,
+			VdbActivityIndex index, TranslatorActivity previous) {
+		this.timestamp = index.getTimestamp();
+		Map<String, Double> newSourceRequests = new HashMap<String, Double>();
+
+		for (Map<String, Object> vdb : vdbs) {
+			String vdbName = String.valueOf(vdb.get(VDBComponent.VDBNAME));
+			String vdbVersion = String.valueOf(vdb.get(VDBComponent.VERSION));
+			Map<String, List<String>> bindingsByModel = getTranslatorBindings(vdb);
+			List<String> bindings = new ArrayList<String>();
+			for (List<String> modelBindings : bindingsByModel.values()) {
+				bindings.addAll(modelBindings);
+			}
+			for (String translator : bindings) {
+				increment(modelCounts, translator);
+			}
+			if (bindings.isEmpty()) {
+				continue;
+			}
+
+			for (Map<String, Object> request : index.getRequests(vdbName,
+					vdbVersion)) {
+				if (!Boolean.TRUE.equals(request.get(SOURCE_REQUEST))) {
+					continue;
+				}
+				String key = VdbActivityIndex.getKey(vdbName, vdbVersion)
+						+ '.' + request.get(VdbActivityIndex.SESSION_ID) + '.'
+						+ request.get(Operation.Value.REQUEST_ID) + '.'
+						+ request.get(NODE_ID);
+				sourceRequestKeys.add(key);
+				boolean isNew = previous != null
+						&& !previous.sourceRequestKeys.contains(key);
+				String model = ModelActivity.getModel((String) request
+						.get(ActivityQuery.COMMAND), bindingsByModel.keySet());
+				List<String> targets = model == null ? bindings
+						: bindingsByModel.get(model);
+				double share = 1.0 / targets.size();
+				for (String translator : targets) {
+					add(activeSourceRequests, translator, share);
+					if (isNew) {
+						add(newSourceRequests, translator, share);
+					}
+				}
+			}
+		}
+
+		this.hasRates = previous != null && timestamp > previous.timestamp;
+		if (hasRates) {
+			for (Map.Entry<String, Double> entry : newSourceRequests.entrySet()) {
+				sourceRequestRates.put(entry.getKey(), Double.valueOf(entry
+						.getValue().doubleValue()
+						* 1000 / (timestamp - previous.timestamp)));
+			}
+		}
+	}
+
+	/**
+	 * @return the translator of each source of each physical model with
+	 *         sources, by model name, with translator overrides resolved to the
+	 *         translator they extend
+	 */
+	static Map<String, List<String>> getTranslatorBindings(Map<String, Object> vdb) {
+		Map<String, String> overrides = new HashMap<String, String>();
+		List<Map<String, Object>> overrideList = (List<Map<String, Object>>) vdb
+				.get(VDBComponent.OVERRIDE_TRANSLATORS);
+		if (overrideList != null) {
+			for (Map<String, Object> override : overrideList) {
+				overrides.put((String) override.get(VDBComponent.TRANSLATOR_NAME),
+						(String) override.get(VDBComponent.BASE_TYPE));
+			}
+		}
+
+		Map<String, List<String>> bindings = new LinkedHashMap<String, List<String>>();
+		List<Map<String, Object>> models = (List<Map<String, Object>>) vdb
+				.get(VDBComponent.MODELS);
+		if (models == null) {
+			return bindings;
+		}
+		for (Map<String, Object> model : models) {
+			if (!VDBComponent.PHYSICAL.equals(model.get(VDBComponent.MODELTYPE))) {
+				continue;
+			}
+			List<Map<String, Object>> sources = (List<Map<String, Object>>) model
+					.get(VDBComponent.SOURCE_MAPPINGS);
+			if (sources == null) {
+				continue;
+			}
+			List<String> modelBindings = new ArrayList<String>();
+			for (Map<String, Object> source : sources) {
+				String translator = (String) source
+						.get(VDBComponent.TRANSLATOR_NAME);
+				if (translator == null) {
+					continue;
+				}
+				String baseType = overrides.get(translator);
+				modelBindings.add(baseType != null ? baseType : translator);
+			}
+			if (!modelBindings.isEmpty()) {
+				bindings.put((String) model.get(VDBComponent.MODELNAME), modelBindings);
+			}
+		}
+		return bindings;
+	}
+
+	private static void increment(Map<String, Integer> map, String key) {
+		Integer value = map.get(key);
+		map.put(key, Integer.valueOf(value == null ? 1 : value.intValue() + 1));
+	}
+
+	private static void add(Map<String, Double> map, String key, double amount) {
+		Double value = map.get(key);
+		map.put(key, Double.valueOf(value == null ? amount : value.doubleValue()
+				+ amount));
+	}
+
+	/**
+	 * @return the time of the {@link VdbActivityIndex} this was built from
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return the number of model sources bound to the translator
+	 */
+	public int getModelCount(String translator) {
+		Integer count = modelCounts.get(translator);
+		return count == null ? 0 : count.intValue();
+	}
+
+	/**
+	 * @return the estimated number of source requests running through the
+	 *         translator
+	 */
+	public double getActiveSourceRequests(String translator) {
+		Double count = activeSourceRequests.get(translator);
+		return count == null ? 0 : count.doubleValue();
+	}
+
+	/**
+	 * @return the estimated number of source requests per second started
+	 *         through the translator since the previous build, or null on the
+	 *         first build
+	 */
+	public Double getSourceRequestRate(String translator) {
+		if (!hasRates) {
+			return null;
+		}
+		Double rate = sourceRequestRates.get(translator);
+		return rate == null ? Double.valueOf(0) : rate;
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.rhq.plugin.TranslatorComponent;
+
+/**
+ * The <code>list-translators</code> result of a Teiid runtime, indexed by
+ * translator name. The translators only change with the runtime or its
+ * deployments, so one catalogue serves the discovery and the configuration of
+ * every translator resource until then.
+ *
+ * Instances are immutable; the translator maps must not be modified.
+ */
+public class TranslatorCatalogue {
+
+	private final String runtimeVersion;
+	private final Map<String, Map<String, Object>> translators = new LinkedHashMap<String, Map<String, Object>>();
+
+	/**
+	 * @param runtimeVersion
+	 *            <code>runtime-version</code> of the teiid subsystem the
+	 *            translators were read from
+	 * @param translatorList
+	 *            <code>list-translators</code> result
+	 */
+	public TranslatorCatalogue(String runtimeVersion,
+			List<Map<String, Object>> translatorList) {
+		this.runtimeVersion = runtimeVersion;
+		for (Map<String, Object> translator : translatorList) {
+			translators.put((String) translator
+					.get(TranslatorComponent.TRANSLATORNAME), translator);
+		}
+	}
+
+	public String getRuntimeVersion() {
+		return runtimeVersion;
+	}
+
+	/**
+	 * @return all translators, in the order of the server
+	 */
+	public Collection<Map<String, Object>> getTranslators() {
+		return Collections.unmodifiableCollection(translators.values());
+	}
+
+	/**
+	 * @return the translator of the given name, or null if there is none
+	 */
+	public Map<String, Object> get(String translatorName) {
+		return translators.get(translatorName);
+	}
+
+}
@@ -0,0 +1,196 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.rhq.plugin.VDBComponent;
+import org.teiid.rhq.plugin.util.PluginConstants;
+
+/**
+ * Sessions, requests and long running requests of a Teiid instance grouped by
+ * VDB name and version. The index is built from one <code>list-sessions</code>,
+ * one <code>list-requests</code> and one <code>list-long-running-requests</code>
+ * result, so that every VDB resource can read its own activity without going
+ * to the server. Requests are assigned to a VDB through their session.
+ *
+ * A list that could not be read leaves the index empty of its rows; such an
+ * index is not complete, and must not be taken as evidence that requests
+ * finished.
+ *
+ * Instances are immutable once built.
+ */
+public class VdbActivityIndex implements PluginConstants {
+
+	public static final String SESSION_ID = "session-id"; //$NON-NLS-1$
+
+	private static final Bucket EMPTY = new Bucket();
+
+	private final long timestamp;
+	private final boolean complete;
+
+	private final int sessionCount;
+	private final int requestCount;
+	private final int longRunningRequestCount;
+
+	private final Map<String, Bucket> buckets = new HashMap<String, Bucket>();
+
+	/**
+	 * Activity of a single VDB version
+	 */
+	static class Bucket {
+		final List<Map<String, Object>> sessions = new ArrayList<Map<String, Object>>();
+		final List<Map<String, Object>> requests = new ArrayList<Map<String, Object>>();
+		final List<Map<String, Object>> longRunningRequests = new ArrayList<Map<String, Object>>();
+	}
+
+	public VdbActivityIndex(List<Map<String, Object>> sessions,
+			List<Map<String, Object>> requests,
+			List<Map<String, Object>> longRunningRequests) {
+		this.timestamp = System.currentTimeMillis();
+		this.complete = sessions != null && requests != null;
+		Map<Object, Bucket> bySession = new HashMap<Object, Bucket>();
+
+		if (sessions != null) {
+			for (Map<String, Object> session : sessions) {
+				String key = getKey(session.get(VDBComponent.VDBNAME),
+						session.get(VDBComponent.VERSION));
+				Bucket bucket = buckets.get(key);
+				if (bucket == null) {
+					bucket = new Bucket();
+					buckets.put(key, bucket);
+				}
+				bucket.sessions.add(session);
+				bySession.put(session.get(SESSION_ID), bucket);
+			}
+		}
+		this.sessionCount = sessions == null ? 0 : sessions.size();
+		this.requestCount = addRequests(requests, bySession, false);
+		this.longRunningRequestCount = addRequests(longRunningRequests, bySession, true);
+	}
+
+	private int addRequests(List<Map<String, Object>> requests,
+			Map<Object, Bucket> bySession, boolean longRunning) {
+		if (requests == null) {
+			return 0;
+		}
+		for (Map<String, Object> request : requests) {
+			Bucket bucket = bySession.get(request.get(SESSION_ID));
+			if (bucket == null) {
+				// session ended between the two list calls
+				continue;
+			}
+			if (longRunning) {
+				bucket.longRunningRequests.add(request);
+			} else {
+				bucket.requests.add(request);
+			}
+		}
+		return requests.size();
+	}
+
+	/**
+	 * Build an index from the session and request lists of a snapshot.
+	 */
+	public static VdbActivityIndex build(ManagementSnapshot snapshot) {
+		return new VdbActivityIndex(snapshot.getSessions(),
+				snapshot.getRequests(), snapshot.getLongRunningRequests());
+	}
+
+	/**
+	 * @return the time in milliseconds at which this index was built
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return true if both the session and the request list were read
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	public int getSessionCount() {
+		return sessionCount;
+	}
+
+	public int getRequestCount() {
+		return requestCount;
+	}
+
+	public int getLongRunningRequestCount() {
+		return longRunningRequestCount;
+	}
+
+	public List<Map<String, Object>> getSessions(String vdbName,
+			String vdbVersion) {
+		return Collections.unmodifiableList(getBucket(vdbName, vdbVersion).sessions);
+	}
+
+	public List<Map<String, Object>> getRequests(String vdbName,
+			String vdbVersion) {
+		return Collections.unmodifiableList(getBucket(vdbName, vdbVersion).requests);
+	}
+
+	public List<Map<String, Object>> getLongRunningRequests(String vdbName,
+			String vdbVersion) {
+		return Collections.unmodifiableList(getBucket(vdbName, vdbVersion).longRunningRequests);
+	}
+
+	public int getSessionCount(String vdbName, String vdbVersion) {
+		return getBucket(vdbName, vdbVersion).sessions.size();
+	}
+
+	public int getRequestCount(String vdbName, String vdbVersion) {
+		return getBucket(vdbName, vdbVersion).requests.size();
+	}
+
+	public int getLongRunningRequestCount(String vdbName, String vdbVersion) {
+		return getBucket(vdbName, vdbVersion).longRunningRequests.size();
+	}
+
+	/**
+	 * @return the activity of every VDB with sessions, by VDB key
+	 */
+	Map<String, Bucket> getBuckets() {
+		return Collections.unmodifiableMap(buckets);
+	}
+
+	private Bucket getBucket(String vdbName, String vdbVersion) {
+		Bucket bucket = buckets.get(getKey(vdbName, vdbVersion));
+		return bucket == null ? EMPTY : bucket;
+	}
+
+	/**
+	 * VDB versions are reported as numbers by the server and kept as strings
+	 * in the resource configuration, so both are normalized to a string key.
+	 */
+	public static String getKey(Object vdbName, Object vdbVersion) {
+		return String.valueOf(vdbName) + '.' + String.valueOf(vdbVersion);
+	}
+
+}
@@ -0,0 +1,277 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.rhq.modules.plugins.jbossas7.ASConnection;
+import org.rhq.modules.plugins.jbossas7.json.Result;
+import org.teiid.rhq.plugin.VDBComponent;
+import org.teiid.rhq.plugin.util.DmrUtil;
+import org.teiid.rhq.plugin.util.PluginConstants.ComponentType.Platform;
+
+/**
+ * Caches the <code>get-vdb</code> result of each VDB version for a limited
+ * time. Concurrent misses for the same VDB share a single server call, the
+ * number of cached VDBs is bounded, and entries can be invalidated explicitly
+ * after the VDB has been changed through the plugin.
+ *
+ * The <code>list-vdbs</code> result is cached the same way, and every VDB it
+ * contains seeds the cache of <code>get-vdb</code> results.
+ *
+ * The cached maps are shared between callers and must not be modified.
+ */
+public class VdbCache {
+
+	public static final long DEFAULT_TIME_TO_LIVE = 10000;
+	public static final int DEFAULT_MAX_ENTRIES = 500;
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	private volatile long timeToLive = DEFAULT_TIME_TO_LIVE;
+	private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+	private List<Map<String, Object>> vdbs;
+	private long vdbsLoaded;
+
+	/**
+	 * A loaded or loading VDB
+	 */
+	static class Entry {
+		final FutureTask<Map<String, Object>> task;
+		volatile long loaded = Long.MAX_VALUE;
+
+		Entry(FutureTask<Map<String, Object>> task) {
+			this.task = task;
+		}
+
+		boolean isExpired(long now, long timeToLive) {
+			return loaded != Long.MAX_VALUE && now - loaded > timeToLive;
+		}
+	}
+
+	/**
+	 * @param timeToLive
+	 *            time in milliseconds a VDB is served from the cache. 0
+	 *            disables caching.
+	 */
+	public void setTimeToLive(long timeToLive) {
+		this.timeToLive = timeToLive;
+		if (timeToLive <= 0) {
+			invalidateAll();
+		}
+	}
+
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * Return the <code>get-vdb</code> result for the given VDB, loading it from
+	 * the server if it is not cached or has expired.
+	 *
+	 * @return the VDB map, or null if the VDB could not be read
+	 */
+	public Map<String, Object> get(final ASConnection connection,
+			final String vdbName, final String vdbVersion) {
+		long ttl = this.timeToLive;
+		if (ttl <= 0) {
+			return VDBComponent.getVdbMap(connection, vdbName, vdbVersion);
+		}
+		String key = VdbActivityIndex.getKey(vdbName, vdbVersion);
+		Entry entry = entries.get(key);
+		if (entry != null && entry.isExpired(System.currentTimeMillis(), ttl)) {
+			entries.remove(key, entry);
+			entry = null;
+		}
+		if (entry == null) {
+			final Entry newEntry = new Entry(new FutureTask<Map<String, Object>>(
+					new Callable<Map<String, Object>>() {
+						public Map<String, Object> call() throws Exception {
+							return VDBComponent.getVdbMap(connection, vdbName,
+									vdbVersion);
+						}
+					}));
+			entry = entries.putIfAbsent(key, newEntry);
+			if (entry == null) {
+				entry = newEntry;
+				evict();
+				try {
+					newEntry.task.run();
+				} finally {
+					newEntry.loaded = System.currentTimeMillis();
+				}
+			}
+		}
+		Map<String, Object> result = null;
+		try {
+			result = entry.task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			entries.remove(key, entry);
+			throw new RuntimeException(e.getCause());
+		}
+		if (result == null) {
+			// do not hold on to failed reads
+			entries.remove(key, entry);
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if the <code>get-vdb</code> result of the given VDB is
+	 *         cached and has not expired
+	 */
+	public boolean isCached(String vdbName, String vdbVersion) {
+		long ttl = this.timeToLive;
+		if (ttl <= 0) {
+			return false;
+		}
+		Entry entry = entries.get(VdbActivityIndex.getKey(vdbName, vdbVersion));
+		return entry != null && entry.task.isDone()
+				&& !entry.isExpired(System.currentTimeMillis(), ttl);
+	}
+
+	/**
+	 * Seed the cache with a VDB map that was obtained some other way, for
+	 * example as part of a <code>list-vdbs</code> result.
+	 */
+	public void put(String vdbName, String vdbVersion,
+			final Map<String, Object> vdbMap) {
+		if (timeToLive <= 0 || vdbMap == null) {
+			return;
+		}
+		Entry entry = new Entry(new FutureTask<Map<String, Object>>(
+				new Callable<Map<String, Object>>() {
+					public Map<String, Object> call() throws Exception {
+						return vdbMap;
+					}
+				}));
+		entry.task.run();
+		entry.loaded = System.currentTimeMillis();
+		entries.put(VdbActivityIndex.getKey(vdbName, vdbVersion), entry);
+		evict();
+	}
+
+	/**
+	 * Return the <code>list-vdbs</code> result, loading it from the server if
+	 * it is not cached or has expired. Concurrent callers share one load.
+	 *
+	 * @return the details of all deployed VDBs, or null if they could not be
+	 *         read
+	 */
+	public List<Map<String, Object>> getVdbs(ASConnection connection) {
+		return getVdbs(connection, timeToLive);
+	}
+
+	/**
+	 * Return the <code>list-vdbs</code> result if it was loaded within the
+	 * given age, otherwise load it from the server. The list is kept for this
+	 * even if the cache is disabled.
+	 *
+	 * @return the details of all deployed VDBs, or null if they could not be
+	 *         read
+	 */
+	public synchronized List<Map<String, Object>> getVdbs(
+			ASConnection connection, long maxAge) {
+		long now = System.currentTimeMillis();
+		if (maxAge > 0 && vdbs != null && now - vdbsLoaded <= maxAge) {
+			return vdbs;
+		}
+		Result result = TeiidModuleView.executeOperation(connection,
+				Platform.Operations.LIST_VDBS, DmrUtil.getTeiidAddress(), null);
+		if (result == null || !result.isSuccess()
+				|| !(result.getResult() instanceof List)) {
+			vdbs = null;
+			return null;
+		}
+		vdbs = (List<Map<String, Object>>) result.getResult();
+		vdbsLoaded = now;
+		for (Map<String, Object> vdb : vdbs) {
+			put(String.valueOf(vdb.get(VDBComponent.VDBNAME)),
+					String.valueOf(vdb.get(VDBComponent.VERSION)), vdb);
+		}
+		return vdbs;
+	}
+
+	public void invalidate(String vdbName, String vdbVersion) {
+		entries.remove(VdbActivityIndex.getKey(vdbName, vdbVersion));
+		synchronized (this) {
+			vdbs = null;
+		}
+	}
+
+	public void invalidateAll() {
+		entries.clear();
+		synchronized (this) {
+			vdbs = null;
+		}
+	}
+
+	/**
+	 * Drop expired entries, then the oldest ones, until the cache is within
+	 * its bound. Only does any work once the bound is exceeded.
+	 */
+	private void evict() {
+		if (entries.size() <= maxEntries) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		long ttl = timeToLive;
+		for (Iterator<Entry> iter = entries.values().iterator(); iter.hasNext();) {
+			if (iter.next().isExpired(now, ttl)) {
+				iter.remove();
+			}
+		}
+		while (entries.size() > maxEntries) {
+			Map.Entry<String, Entry> oldest = null;
+			for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+				if (oldest == null
+						|| candidate.getValue().loaded < oldest.getValue().loaded) {
+					oldest = candidate;
+				}
+			}
+			if (oldest == null) {
+				break;
+			}
+			entries.remove(oldest.getKey(), oldest.getValue());
+		}
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.teiid.rhq.plugin.VDBComponent;
+
+/**
+ * Selects the VDB versions that are brought into the inventory: the names
+ * have to match the include pattern and not the exclude pattern, and only the
+ * given number of highest versions of each name are kept. VDBs that are not
+ * selected are never discovered, so they have no resource and are neither
+ * polled for metrics nor for availability. VDBs that were discovered before
+ * they were left out keep their resource, but collect no metrics.
+ *
+ * The patterns are regular expressions matched against the whole VDB name,
+ * compiled once when the filter is created. Instances are immutable.
+ */
+public class VdbFilter {
+
+	/**
+	 * Selects every VDB
+	 */
+	public static final VdbFilter ALL = new VdbFilter(null, null, 0);
+
+	private final Pattern include;
+	private final Pattern exclude;
+	private final int latestVersions;
+
+	/**
+	 * @param include
+	 *            pattern the VDB names must match; null or empty for all
+	 * @param exclude
+	 *            pattern the VDB names must not match; null or empty for none
+	 * @param latestVersions
+	 *            number of highest versions kept for each VDB name; 0 or less
+	 *            for all
+	 * @throws PatternSyntaxException
+	 *             if a pattern is not a valid regular expression
+	 */
+	public VdbFilter(String include, String exclude, int latestVersions) {
+		this.include = compile(include);
+		this.exclude = compile(exclude);
+		this.latestVersions = latestVersions;
+	}
+
+	private static Pattern compile(String pattern) {
+		if (pattern == null || pattern.trim().length() == 0) {
+			return null;
+		}
+		return Pattern.compile(pattern.trim());
+	}
+
+	/**
+	 * @return true if this filter selects every VDB
+	 */
+	public boolean isEmpty() {
+		return include == null && exclude == null && latestVersions <= 0;
+	}
+
+	/**
+	 * @return true if the name passes the include and exclude patterns
+	 */
+	public boolean accepts(String vdbName) {
+		if (include != null && !include.matcher(vdbName).matches()) {
+			return false;
+		}
+		return exclude == null || !exclude.matcher(vdbName).matches();
+	}
+
+	/**
+	 * @param vdbs
+	 *            <code>list-vdbs</code> result
+	 * @return the selected VDBs, in the order of the given list
+	 */
+	public List<Map<String, Object>> filter(List<Map<String, Object>> vdbs) {
+		if (isEmpty()) {
+			return vdbs;
+		}
+		List<Map<String, Object>> accepted = new ArrayList<Map<String, Object>>();
+		Map<String, List<Integer>> versions = new HashMap<String, List<Integer>>();
+		for (Map<String, Object> vdb : vdbs) {
+			String name = String.valueOf(vdb.get(VDBComponent.VDBNAME));
+			if (!accepts(name)) {
+				continue;
+			}
+			accepted.add(vdb);
+			if (latestVersions > 0) {
+				List<Integer> list = versions.get(name);
+				if (list == null) {
+					list = new ArrayList<Integer>();
+					versions.put(name, list);
+				}
+				list.add(Integer.valueOf(getVersion(vdb)));
+			}
+		}
+		if (latestVersions <= 0) {
+			return accepted;
+		}
+
+		// Lowest version kept for each name
+		Map<String, Integer> lowest = new HashMap<String, Integer>();
+		for (Map.Entry<String, List<Integer>> entry : versions.entrySet()) {
+			List<Integer> list = entry.getValue();
+			Collections.sort(list, Collections.reverseOrder());
+			lowest.put(entry.getKey(), list.get(Math.min(latestVersions, list.size()) - 1));
+		}
+		List<Map<String, Object>> latest = new ArrayList<Map<String, Object>>();
+		for (Map<String, Object> vdb : accepted) {
+			String name = String.valueOf(vdb.get(VDBComponent.VDBNAME));
+			if (getVersion(vdb) >= lowest.get(name).intValue()) {
+				latest.add(vdb);
+			}
+		}
+		return latest;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof VdbFilter)) {
+			return false;
+		}
+		VdbFilter other = (VdbFilter) obj;
+		return latestVersions == other.latestVersions
+				&& String.valueOf(include).equals(String.valueOf(other.include))
+				&& String.valueOf(exclude).equals(String.valueOf(other.exclude));
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * String.valueOf(include).hashCode() + String
+				.valueOf(exclude).hashCode()) + latestVersions;
+	}
+
+	private static int getVersion(Map<String, Object> vdb) {
+		Object version = vdb.get(VDBComponent.VERSION);
+		if (version instanceof Number) {
+			return ((Number) version).intValue();
+		}
+		return Integer.parseInt(String.valueOf(version));
+	}
+
+}
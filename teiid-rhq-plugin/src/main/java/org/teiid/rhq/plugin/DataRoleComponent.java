@@ -35,6 +35,7 @@ import org.rhq.core.domain.configuration.PropertyList;
 import org.rhq.core.domain.configuration.PropertyMap;
 import org.rhq.core.domain.configuration.PropertySimple;
 import org.rhq.core.domain.measurement.AvailabilityType;
+import org.rhq.core.domain.measurement.MeasurementDataNumeric;
 import org.rhq.core.domain.measurement.MeasurementReport;
 import org.rhq.core.domain.measurement.MeasurementScheduleRequest;
 import org.rhq.core.pluginapi.configuration.ConfigurationFacet;
@@ -42,6 +43,7 @@ import org.rhq.core.pluginapi.configuration.ConfigurationUpdateReport;
 import org.rhq.core.pluginapi.inventory.ResourceContext;
 import org.rhq.modules.plugins.jbossas7.ASConnection;
 import org.rhq.modules.plugins.jbossas7.json.Result;
+import org.teiid.rhq.admin.DataRoleActivity;
 import org.teiid.rhq.admin.TeiidModuleView;
 import org.teiid.rhq.plugin.util.DmrUtil;
 import org.teiid.rhq.plugin.util.PluginConstants;
@@ -111,10 +113,33 @@ public class DataRoleComponent extends Facet {
 	}
 
 	@Override
-	public void getValues(MeasurementReport arg0,
-			Set<MeasurementScheduleRequest> arg1) throws Exception {
-		// TODO Auto-generated method stub
+	public void getValues(MeasurementReport report,
+			Set<MeasurementScheduleRequest> requests) throws Exception {
 
+		if (!getVDBComponent().isSelected()) {
+			return;
+		}
+
+		// Computed once per VDB from the shared session and request index
+		DataRoleActivity activity = getVDBComponent().getDataRoleActivity();
+		String roleName = resourceContext.getResourceKey();
+
+		for (MeasurementScheduleRequest request : requests) {
+			String name = request.getName();
+
+			Number value = null;
+			if (name.equals(DATA_ROLE.Metrics.SESSION_COUNT)) {
+				value = new Integer(activity.getSessionCount(roleName));
+			} else if (name.equals(DATA_ROLE.Metrics.QUERY_COUNT)) {
+				value = new Integer(activity.getRequestCount(roleName));
+			} else if (name.equals(DATA_ROLE.Metrics.QUERY_RATE)) {
+				// null until there is a previous sample
+				value = activity.getRequestRate(roleName);
+			}
+			if (value != null) {
+				report.addData(new MeasurementDataNumeric(request, value.doubleValue()));
+			}
+		}
 	}
 
 	/**
@@ -131,6 +156,15 @@ public class DataRoleComponent extends Facet {
 		resourceConfiguration = resourceConfig.deepCopy();
 		report.setStatus(ConfigurationUpdateStatus.SUCCESS);
 		
+		try {
+			updateDataRole(report);
+		} finally {
+			// Even a failed update may have applied some of the changes
+			getVDBComponent().invalidateVdbMap();
+		}
+	}
+	
+	private void updateDataRole(ConfigurationUpdateReport report) {
 		// Update date role anyAuthenticated 
 		PropertySimple anyAuthRoleProperty = resourceConfiguration.getSimple(ANY_AUTHENTICATED_ROLE);		
 		String roleName = resourceConfiguration.getSimple("name").getStringValue();
@@ -154,7 +188,8 @@ public class DataRoleComponent extends Facet {
 			return;
 		}
 	
-		//Now update role names by removing existing and adding list values from configuration as new	
+		//Now update role names by removing existing and adding list values from configuration as new.
+		//The mapped roles must be read from the server, not from the cache.
 		Map<String, Object> vdbMap = VDBComponent.getVdbMap(getASConnection(), vdbName,
 				vdbVersion);
 		
@@ -197,66 +232,71 @@ public class DataRoleComponent extends Facet {
 	@Override
 	public Configuration loadResourceConfiguration() {
 
-		VDBComponent parentComponent = (VDBComponent) this.resourceContext
-				.getParentResourceComponent();
 		Configuration configuration = this.resourceConfiguration;
-		ASConnection connection = parentComponent.getASConnection();
-
-		Map<String, Object> vdbMap = VDBComponent.getVdbMap(connection, parentComponent.deploymentName,
-				parentComponent.getResourceConfiguration().getSimple("version")
-						.getStringValue());
 
-		// Get data roles from VDB
-		List<Map<String, Object>> dataPolicies = (List<Map<String, Object>>) vdbMap.get(VDBComponent.DATA_POLICIES);
-		for (Map<String, Object> policy : dataPolicies) {
-		     String dataRoleName = (String) policy.get(DataRoleComponent.POLICY_NAME);
-		     Boolean anyAuthenticated =  (Boolean) policy.get(DataRoleComponent.ANY_AUTHENTICATED);
-		     String description = (String) policy.get(DataRoleComponent.POLICY_DESCRIPTION);
-		     Boolean allowTempTableCreate = (Boolean) policy.get(DataRoleComponent.ALLOW_CREATE_TEMP_TABLES);
-			 
-			 configuration.put(new PropertySimple("name", dataRoleName));
-			 configuration.put(new PropertySimple("anyAuthenticated", anyAuthenticated));
-			 configuration.put(new PropertySimple("description", description));
-			 configuration.put(new PropertySimple("allowCreateTempTables", allowTempTableCreate));
-			
-			 //Load data permissions list
-			 PropertyList dataPermissionsList = new PropertyList(
-					 "dataPermissionsList");
-			 configuration.put(dataPermissionsList);
-			 List<Map<String, Object>> dataPermissions = (List<Map<String, Object>> ) policy.get(DataRoleComponent.DATA_PERMISSIONS);
-			 if (dataPermissions != null) {
-				 for (Map<String, Object> dataPermission : dataPermissions) {
-					 PropertyMap dataPermissionsMap = new PropertyMap(
-							 "map");
-					 dataPermissionsList.add(dataPermissionsMap);
-					 dataPermissionsMap.put(new PropertySimple("resourceName", dataPermission.get(DataRoleComponent.RESOURCE_NAME)));
-					 dataPermissionsMap.put(new PropertySimple("allowCreate", dataPermission.get(DataRoleComponent.ALLOW_CREATE)));
-					 dataPermissionsMap.put(new PropertySimple("allowUpdate", dataPermission.get(DataRoleComponent.ALLOW_UPDATE)));
-					 dataPermissionsMap.put(new PropertySimple("allowRead", dataPermission.get(DataRoleComponent.ALLOW_READ)));
-				 }
-			
-			 }
-			 
-			 //Load mapped role names list
-			 PropertyList mappedRoleNameList = new PropertyList(
-			 "mappedRoleNameList");
-			 configuration.put(mappedRoleNameList);
-			 List<String> mappedRoleNames = (List<String>) policy.get(DataRoleComponent.MAPPED_ROLE_NAMES);
-			 if (mappedRoleNames != null) {
-				 for (String mappedRoleName : mappedRoleNames) {
-					 mappedRoleNameList.add(new PropertySimple("name", mappedRoleName));
-				 }
-			 }
+		// Get this data role from the policies of the VDB
+		Map<String, Object> policy = getVDBComponent().getDataPolicies().get(resourceContext.getResourceKey());
+		if (policy == null) {
+			return configuration;
 		}
+		
+	     String dataRoleName = (String) policy.get(DataRoleComponent.POLICY_NAME);
+	     Boolean anyAuthenticated =  (Boolean) policy.get(DataRoleComponent.ANY_AUTHENTICATED);
+	     String description = (String) policy.get(DataRoleComponent.POLICY_DESCRIPTION);
+	     Boolean allowTempTableCreate = (Boolean) policy.get(DataRoleComponent.ALLOW_CREATE_TEMP_TABLES);
+		 
+		 configuration.put(new PropertySimple("name", dataRoleName));
+		 configuration.put(new PropertySimple("anyAuthenticated", anyAuthenticated));
+		 configuration.put(new PropertySimple("description", description));
+		 configuration.put(new PropertySimple("allowCreateTempTables", allowTempTableCreate));
+		
+		 //Load data permissions list
+		 configuration.put(getDataPermissionsList(policy));
+		 
+		 //Load mapped role names list
+		 configuration.put(getMappedRoleNameList(policy));
 
 		return configuration;
 
 	}
 
+	static PropertyList getDataPermissionsList(Map<String, Object> policy) {
+		 PropertyList dataPermissionsList = new PropertyList(
+				 "dataPermissionsList");
+		 List<Map<String, Object>> dataPermissions = (List<Map<String, Object>> ) policy.get(DataRoleComponent.DATA_PERMISSIONS);
+		 if (dataPermissions != null) {
+			 for (Map<String, Object> dataPermission : dataPermissions) {
+				 PropertyMap dataPermissionsMap = new PropertyMap(
+						 "map");
+				 dataPermissionsList.add(dataPermissionsMap);
+				 dataPermissionsMap.put(new PropertySimple("resourceName", dataPermission.get(DataRoleComponent.RESOURCE_NAME)));
+				 dataPermissionsMap.put(new PropertySimple("allowCreate", dataPermission.get(DataRoleComponent.ALLOW_CREATE)));
+				 dataPermissionsMap.put(new PropertySimple("allowUpdate", dataPermission.get(DataRoleComponent.ALLOW_UPDATE)));
+				 dataPermissionsMap.put(new PropertySimple("allowRead", dataPermission.get(DataRoleComponent.ALLOW_READ)));
+			 }
+		 }
+		 return dataPermissionsList;
+	}
+
+	static PropertyList getMappedRoleNameList(Map<String, Object> policy) {
+		 PropertyList mappedRoleNameList = new PropertyList(
+		 "mappedRoleNameList");
+		 List<String> mappedRoleNames = (List<String>) policy.get(DataRoleComponent.MAPPED_ROLE_NAMES);
+		 if (mappedRoleNames != null) {
+			 for (String mappedRoleName : mappedRoleNames) {
+				 mappedRoleNameList.add(new PropertySimple("name", mappedRoleName));
+			 }
+		 }
+		 return mappedRoleNameList;
+	}
+
 	@Override
 	public ASConnection getASConnection() {
-		return ((VDBComponent) this.resourceContext
-				.getParentResourceComponent()).getASConnection();
+		return getVDBComponent().getASConnection();
+	}
+
+	VDBComponent getVDBComponent() {
+		return (VDBComponent) this.resourceContext.getParentResourceComponent();
 	}
 
 }
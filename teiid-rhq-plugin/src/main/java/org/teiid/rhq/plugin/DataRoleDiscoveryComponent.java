@@ -22,21 +22,17 @@
 package org.teiid.rhq.plugin;
 
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.rhq.core.domain.configuration.Configuration;
-import org.rhq.core.domain.configuration.PropertyList;
-import org.rhq.core.domain.configuration.PropertyMap;
 import org.rhq.core.domain.configuration.PropertySimple;
 import org.rhq.core.pluginapi.inventory.DiscoveredResourceDetails;
 import org.rhq.core.pluginapi.inventory.InvalidPluginConfigurationException;
 import org.rhq.core.pluginapi.inventory.ResourceDiscoveryComponent;
 import org.rhq.core.pluginapi.inventory.ResourceDiscoveryContext;
-import org.rhq.modules.plugins.jbossas7.ASConnection;
 import org.teiid.rhq.plugin.util.PluginConstants;
 
 /**
@@ -54,16 +50,19 @@ public class DataRoleDiscoveryComponent implements ResourceDiscoveryComponent {
 		Set<DiscoveredResourceDetails> discoveredResources = new HashSet<DiscoveredResourceDetails>();
 		VDBComponent parentComponent = (VDBComponent) discoveryContext
 				.getParentResourceComponent();
-		ASConnection connection = parentComponent.getASConnection();
 
-		Map<String, Object> vdbMap = VDBComponent.getVdbMap(connection, parentComponent.deploymentName,
-				parentComponent.getResourceConfiguration().getSimple("version")
-						.getStringValue());
+		// A VDB left out by the filter keeps the children it has
+		if (!parentComponent.isSelected()) {
+			return discoveredResources;
+		}
 
-		// Get data roles from VDB
-		List<Map<String, Object>> dataPolicies = (List<Map<String, Object>>) vdbMap.get(VDBComponent.DATA_POLICIES);
-		if (dataPolicies == null) return discoveredResources;
-		for (Map<String, Object> policy : dataPolicies) {
+		// Load the details of all VDBs at once, if configured, so that the
+		// discovery of the other VDBs does not wait on a round trip each
+		parentComponent.getPlatformComponent().loadVdbDetails();
+
+		// Policies of the VDB the parent component already holds, by name
+		Map<String, Map<String, Object>> dataPolicies = parentComponent.getDataPolicies();
+		for (Map<String, Object> policy : dataPolicies.values()) {
 		     String dataRoleName = (String) policy.get(DataRoleComponent.POLICY_NAME);
 		     Boolean anyAuthenticated =  (Boolean) policy.get(DataRoleComponent.ANY_AUTHENTICATED);
 		     String description = (String) policy.get(DataRoleComponent.POLICY_DESCRIPTION);
@@ -91,36 +90,11 @@ public class DataRoleDiscoveryComponent implements ResourceDiscoveryComponent {
 			 configuration.put(new PropertySimple("description", description));
 			 configuration.put(new PropertySimple("allowCreateTempTables", allowTempTableCreate));
 			
-			 //Load data permissions list
-			 PropertyList dataPermissionsList = new PropertyList(
-					 "dataPermissionsList");
-			 configuration.put(dataPermissionsList);
-			 List<Map<String, Object>> dataPermissions = (List<Map<String, Object>> ) policy.get(DataRoleComponent.DATA_PERMISSIONS);
-			 if (dataPermissions==null) return discoveredResources;
-			 if (dataPermissions != null) {
-				 for (Map<String, Object> dataPermission : dataPermissions) {
-					 PropertyMap dataPermissionsMap = new PropertyMap(
-							 "map");
-					 dataPermissionsList.add(dataPermissionsMap);
-					 dataPermissionsMap.put(new PropertySimple("resourceName", dataPermission.get(DataRoleComponent.RESOURCE_NAME)));
-					 dataPermissionsMap.put(new PropertySimple("allowCreate", dataPermission.get(DataRoleComponent.ALLOW_CREATE)));
-					 dataPermissionsMap.put(new PropertySimple("allowUpdate", dataPermission.get(DataRoleComponent.ALLOW_UPDATE)));
-					 dataPermissionsMap.put(new PropertySimple("allowRead", dataPermission.get(DataRoleComponent.ALLOW_READ)));
-				 }
-			
-			 }
+			 // The data permissions are only loaded with the resource
+			 // configuration, see DataRoleComponent.loadResourceConfiguration()
 			 
 			 //Load mapped role names list
-			 PropertyList mappedRoleNameList = new PropertyList(
-			 "mappedRoleNameList");
-			 configuration.put(mappedRoleNameList);
-			 List<String> mappedRoleNames = (List<String>) policy.get(DataRoleComponent.MAPPED_ROLE_NAMES);
-			 if (mappedRoleNames != null) {
-				 for (String mappedRoleName : mappedRoleNames) {
-					 mappedRoleNameList.add(new PropertySimple("name", mappedRoleName));
-				 }
-			
-			 }
+			 configuration.put(DataRoleComponent.getMappedRoleNameList(policy));
 			 
 			 // Add to return values
 			 discoveredResources.add(detail);
@@ -53,6 +53,7 @@ import org.teiid.rhq.plugin.objects.ExecutedOperationResultImpl;
 import org.teiid.rhq.plugin.objects.ExecutedResult;
 import org.teiid.rhq.plugin.util.DmrUtil;
 import org.teiid.rhq.plugin.util.PluginConstants;
+import org.teiid.rhq.plugin.util.PluginConstants.Operation;
 
 /**
  * This class implements required RHQ interfaces and provides common logic used
@@ -191,6 +192,29 @@ public abstract class Facet extends BaseComponent<BaseComponent<?>> implements
 
 	}
 
+	/**
+	 * Copy the optional filter and page parameters of a session or request
+	 * list operation into the argument map.
+	 */
+	protected static void setListArguments(Configuration configuration,
+			Map<String, Object> argumentMap) {
+		if (configuration == null) {
+			return;
+		}
+		String[] names = new String[] { Operation.Value.USER_NAME_FILTER,
+				Operation.Value.APPLICATION_NAME_FILTER, Operation.Value.MIN_AGE,
+				Operation.Value.OFFSET, Operation.Value.LIMIT,
+				Operation.Value.SORT_BY, Operation.Value.SORT_DESCENDING,
+				Operation.Value.COMMAND_FILTER, Operation.Value.CLIENT_HOST_FILTER,
+				Operation.Value.MIN_IDLE_TIME };
+		for (String name : names) {
+			String value = configuration.getSimpleValue(name, null);
+			if (value != null) {
+				argumentMap.put(name, Operation.Value.SORT_DESCENDING.equals(name) ? Boolean.valueOf(value) : value);
+			}
+		}
+	}
+
 	protected void setMetricArguments(String name, Configuration configuration,
 			Map<String, Object> argumentMap) {
 		// moved this logic up to the associated implemented class
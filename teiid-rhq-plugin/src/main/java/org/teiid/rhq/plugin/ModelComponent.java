@@ -0,0 +1,165 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.plugin;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.rhq.core.domain.configuration.Configuration;
+import org.rhq.core.domain.configuration.PropertyList;
+import org.rhq.core.domain.configuration.PropertyMap;
+import org.rhq.core.domain.configuration.PropertySimple;
+import org.rhq.core.domain.measurement.AvailabilityType;
+import org.rhq.core.domain.measurement.MeasurementDataNumeric;
+import org.rhq.core.domain.measurement.MeasurementReport;
+import org.rhq.core.domain.measurement.MeasurementScheduleRequest;
+import org.rhq.core.pluginapi.inventory.ResourceContext;
+import org.rhq.modules.plugins.jbossas7.ASConnection;
+import org.teiid.rhq.admin.ModelActivity;
+import org.teiid.rhq.plugin.util.PluginConstants;
+import org.teiid.rhq.plugin.util.PluginConstants.ComponentType.Model;
+
+/**
+ * Component class for a physical model of a Teiid VDB
+ * 
+ */
+public class ModelComponent extends Facet {
+	private final Log LOG = LogFactory
+			.getLog(PluginConstants.DEFAULT_LOGGER_CATEGORY);
+
+	@Override
+	public void start(ResourceContext context) {
+		this.resourceConfiguration = context.getPluginConfiguration();
+		this.componentType = PluginConstants.ComponentType.Model.NAME;
+		try {
+			super.start(context);
+			}catch (Exception e){
+				
+			}
+	}
+
+	@Override
+	public AvailabilityType getAvailability() {
+		return getVDBComponent().getAvailability();
+	}
+
+	@Override
+	String getComponentType() {
+		return PluginConstants.ComponentType.Model.NAME;
+	}
+
+	@Override
+	public void getValues(MeasurementReport report,
+			Set<MeasurementScheduleRequest> requests) throws Exception {
+
+		if (!getVDBComponent().isSelected()) {
+			return;
+		}
+
+		// Computed once per VDB from the shared request index
+		ModelActivity activity = getVDBComponent().getModelActivity();
+		String modelName = resourceContext.getResourceKey();
+
+		for (MeasurementScheduleRequest request : requests) {
+			String name = request.getName();
+
+			Number value = null;
+			if (name.equals(Model.Metrics.SOURCE_COUNT)) {
+				value = new Integer(activity.getSourceCount(modelName));
+			} else if (name.equals(Model.Metrics.ACTIVE_SOURCE_REQUESTS)) {
+				value = new Double(activity.getActiveSourceRequests(modelName));
+			} else if (name.equals(Model.Metrics.SOURCE_REQUEST_RATE)) {
+				// null until there is a previous sample
+				value = activity.getSourceRequestRate(modelName);
+			}
+			if (value != null) {
+				report.addData(new MeasurementDataNumeric(request, value.doubleValue()));
+			}
+		}
+	}
+
+	protected void setOperationArguments(String name,
+			Configuration configuration, Map argumentMap) {
+		//No operations for models
+	}
+
+	@Override
+	public Configuration loadResourceConfiguration() {
+
+		Configuration configuration = this.resourceConfiguration;
+
+		Map<String, Object> model = getModel(getVDBComponent().getVdbMap(), resourceContext.getResourceKey());
+		if (model == null) {
+			LOG.debug("Model " + resourceContext.getResourceKey() + " not found in its VDB"); //$NON-NLS-1$ //$NON-NLS-2$
+			return configuration;
+		}
+
+		configuration.put(new PropertySimple("name", model.get(VDBComponent.MODELNAME))); //$NON-NLS-1$
+		configuration.put(new PropertySimple("visibility", model.get(VDBComponent.VISIBLE))); //$NON-NLS-1$
+
+		PropertyList sourceList = new PropertyList("sourceList"); //$NON-NLS-1$
+		List<Map<String, Object>> mappings = (List<Map<String, Object>>) model.get(VDBComponent.SOURCE_MAPPINGS);
+		if (mappings != null) {
+			for (Map<String, Object> mapping : mappings) {
+				PropertyMap sourceMap = new PropertyMap("map"); //$NON-NLS-1$
+				sourceMap.put(new PropertySimple("sourceName", mapping.get(VDBComponent.SOURCE_NAME))); //$NON-NLS-1$
+				sourceMap.put(new PropertySimple("translatorName", mapping.get(VDBComponent.TRANSLATOR_NAME))); //$NON-NLS-1$
+				sourceMap.put(new PropertySimple("jndiName", mapping.get(VDBComponent.JNDI_NAME))); //$NON-NLS-1$
+				sourceList.add(sourceMap);
+			}
+		}
+		configuration.put(sourceList);
+
+		return configuration;
+	}
+
+	/**
+	 * @return the physical model of the given name from the
+	 *         <code>get-vdb</code> result, or null if there is none
+	 */
+	static Map<String, Object> getModel(Map<String, Object> vdbMap, String modelName) {
+		List<Map<String, Object>> models = vdbMap == null ? null : (List<Map<String, Object>>) vdbMap.get(VDBComponent.MODELS);
+		if (models == null) {
+			return null;
+		}
+		for (Map<String, Object> model : models) {
+			if (VDBComponent.PHYSICAL.equals(model.get(VDBComponent.MODELTYPE))
+					&& modelName.equals(model.get(VDBComponent.MODELNAME))) {
+				return model;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public ASConnection getASConnection() {
+		return getVDBComponent().getASConnection();
+	}
+
+	VDBComponent getVDBComponent() {
+		return (VDBComponent) this.resourceContext.getParentResourceComponent();
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.plugin;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.rhq.core.domain.configuration.Configuration;
+import org.rhq.core.domain.configuration.PropertySimple;
+import org.rhq.core.pluginapi.inventory.DiscoveredResourceDetails;
+import org.rhq.core.pluginapi.inventory.InvalidPluginConfigurationException;
+import org.rhq.core.pluginapi.inventory.ResourceDiscoveryComponent;
+import org.rhq.core.pluginapi.inventory.ResourceDiscoveryContext;
+import org.teiid.rhq.plugin.util.PluginConstants;
+
+/**
+ * Discovery component for the physical models of a VDB
+ * 
+ */
+public class ModelDiscoveryComponent implements ResourceDiscoveryComponent {
+
+	private final Log log = LogFactory.getLog(PluginConstants.DEFAULT_LOGGER_CATEGORY);
+
+	public Set<DiscoveredResourceDetails> discoverResources(
+			ResourceDiscoveryContext discoveryContext)
+			throws InvalidPluginConfigurationException, Exception {
+		Set<DiscoveredResourceDetails> discoveredResources = new HashSet<DiscoveredResourceDetails>();
+		VDBComponent parentComponent = (VDBComponent) discoveryContext
+				.getParentResourceComponent();
+
+		// A VDB left out by the filter keeps the children it has
+		if (!parentComponent.isSelected()) {
+			return discoveredResources;
+		}
+
+		// Load the details of all VDBs at once, if configured, so that the
+		// discovery of the other VDBs does not wait on a round trip each
+		parentComponent.getPlatformComponent().loadVdbDetails();
+
+		// The models are part of the VDB the parent component already holds
+		Map<String, Object> vdbMap = parentComponent.getVdbMap();
+		List<Map<String, Object>> models = vdbMap == null ? null : (List<Map<String, Object>>) vdbMap.get(VDBComponent.MODELS);
+		if (models == null) {
+			return discoveredResources;
+		}
+
+		for (Map<String, Object> model : models) {
+			// Only physical models are bound to sources
+			if (!VDBComponent.PHYSICAL.equals(model.get(VDBComponent.MODELTYPE))) {
+				continue;
+			}
+			String modelName = (String) model.get(VDBComponent.MODELNAME);
+
+			/**
+			 * 
+			 * A discovered resource must have a unique key, that must stay the
+			 * same when the resource is discovered the next time
+			 */
+			DiscoveredResourceDetails detail = new DiscoveredResourceDetails(
+					discoveryContext.getResourceType(), // ResourceType
+					modelName, // Resource Key
+					modelName, // Resource Name
+					null, // Version
+					PluginConstants.ComponentType.Model.DESCRIPTION, // Description
+					discoveryContext.getDefaultPluginConfiguration(), // Plugin config
+					null // Process info from a process scan
+			);
+
+			Configuration configuration = detail.getPluginConfiguration();
+			configuration.put(new PropertySimple("name", modelName)); //$NON-NLS-1$
+
+			// Add to return values
+			discoveredResources.add(detail);
+			log.debug("Discovered Teiid VDB Model: " + modelName); //$NON-NLS-1$
+		}
+
+		return discoveredResources;
+	}
+
+}
@@ -21,11 +21,16 @@
  */
 package org.teiid.rhq.plugin;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -41,11 +46,25 @@ import org.rhq.core.pluginapi.inventory.ResourceContext;
 import org.rhq.modules.plugins.jbossas7.ASConnection;
 import org.rhq.modules.plugins.jbossas7.BaseComponent;
 import org.rhq.modules.plugins.jbossas7.json.Address;
+import org.rhq.modules.plugins.jbossas7.json.ReadAttribute;
+import org.rhq.modules.plugins.jbossas7.json.ReadChildrenNames;
 import org.rhq.modules.plugins.jbossas7.json.ReadResource;
 import org.rhq.modules.plugins.jbossas7.json.Result;
+import org.teiid.rhq.admin.ManagementSnapshot;
+import org.teiid.rhq.admin.MatViewRefresher;
+import org.teiid.rhq.admin.MetricCollector;
+import org.teiid.rhq.admin.RateTracker;
+import org.teiid.rhq.admin.RequestLatencyTracker;
 import org.teiid.rhq.admin.TeiidModuleView;
+import org.teiid.rhq.admin.TranslatorActivity;
+import org.teiid.rhq.admin.TranslatorCatalogue;
+import org.teiid.rhq.admin.VdbActivityIndex;
+import org.teiid.rhq.admin.VdbCache;
+import org.teiid.rhq.admin.VdbFilter;
 import org.teiid.rhq.plugin.util.DmrUtil;
 import org.teiid.rhq.plugin.util.PluginConstants;
+import org.teiid.rhq.plugin.util.PluginUtils;
+import org.teiid.rhq.plugin.util.PluginConstants.ComponentType.ASSystem;
 import org.teiid.rhq.plugin.util.PluginConstants.ComponentType.Platform;
 import org.teiid.rhq.plugin.util.PluginConstants.Operation;
 
@@ -58,12 +77,173 @@ public class PlatformComponent extends Facet {
 	public static final String DOT = ".";
 	private final Log LOG = LogFactory.getLog(PluginConstants.DEFAULT_LOGGER_CATEGORY);
 	public static final String DISPLAY_PREVIEW_VDBS = "displayPreviewVDBS";
+	public static final String COMPOSITE_METRIC_COLLECTION = "compositeMetricCollection";
+	public static final String ACTIVITY_INDEX_MAX_AGE = "activityIndexMaxAge";
+	public static final String VDB_CACHE_TIME_TO_LIVE = "vdbCacheTimeToLive";
+	public static final String VDB_CACHE_MAX_ENTRIES = "vdbCacheMaxEntries";
+	public static final String METRIC_COLLECTION_THREADS = "metricCollectionThreads";
+	public static final String METRIC_TIMEOUT = "metricTimeout";
+	public static final String VDB_METRIC_COLLECTION_THREADS = "vdbMetricCollectionThreads";
+	public static final String VDB_AVAILABILITY_WINDOW = "vdbAvailabilityWindow";
+	public static final String AVAILABILITY_PROBE = "availabilityProbe";
+	public static final String AVAILABILITY_PROBE_ATTRIBUTE = "attribute";
+	public static final String AVAILABILITY_PROBE_READ_RESOURCE = "readResource";
+	public static final String AVAILABILITY_FAILURE_THRESHOLD = "availabilityFailureThreshold";
+	public static final String AVAILABILITY_CACHE_TIME = "availabilityCacheTime";
+	public static final String DEPLOYMENT_WATCH = "deploymentWatch";
+	public static final String DISCOVERY_THREADS = "discoveryThreads";
+	public static final String DISCOVERY_TIMEOUT = "discoveryTimeout";
+	public static final String VDB_INCLUDE_PATTERN = "vdbIncludePattern";
+	public static final String VDB_EXCLUDE_PATTERN = "vdbExcludePattern";
+	public static final String VDB_LATEST_VERSIONS = "vdbLatestVersions";
+	public static final String MATVIEW_REFRESH_THREADS = "matViewRefreshThreads";
+	public static final String MATVIEW_REFRESH_TIMEOUT = "matViewRefreshTimeout";
+
+	public static final long DEFAULT_DISCOVERY_THREADS = 0;
+	// 0 sizes the VDB metric pool by the number of discovered VDBs
+	public static final long DEFAULT_VDB_METRIC_COLLECTION_THREADS = 0;
+	private static final int VDBS_PER_METRIC_THREAD = 25;
+	private static final int MAX_VDB_METRIC_THREADS = 32;
+	public static final long DEFAULT_DISCOVERY_TIMEOUT = 60000;
+	private static final String RUNTIME_VERSION = "runtime-version";
+	
+	/**
+	 * get-vdb results shared by the VDB and data role components
+	 */
+	private final VdbCache vdbCache = new VdbCache();
+	
+	/**
+	 * Sessions and requests of all VDBs, refreshed once per Platform collection
+	 * cycle and shared by all VDB components
+	 */
+	private volatile VdbActivityIndex activityIndex;
+
+	private final Object activityIndexLock = new Object();
+
+	/**
+	 * Set when the VDB components read the index, so that the next Platform
+	 * cycle refreshes it for them
+	 */
+	private volatile boolean activityIndexWanted;
+	// held only to compare and publish, not while the lists are read
+	private final Object activityIndexPublishLock = new Object();
+
+	/**
+	 * Translator usage, rebuilt for each new activity index
+	 */
+	private volatile TranslatorActivity translatorActivity;
+	private final Object translatorActivityLock = new Object();
+
+	/**
+	 * Translators of the runtime, read once per runtime version and deployment
+	 * change, with the time its runtime version was last compared
+	 */
+	private volatile TranslatorCatalogue translatorCatalogue;
+	private volatile long translatorCatalogueChecked;
+	private final Object translatorCatalogueLock = new Object();
+
+	/**
+	 * Status of every VDB version, and the versions selected for the
+	 * inventory, with the list-vdbs result and the selection they were built
+	 * from
+	 */
+	private volatile VdbStatus vdbStatus;
+
+	private static class VdbStatus {
+		final List<Map<String, Object>> source;
+		final VdbFilter filter;
+		final boolean previews;
+		final Map<String, String> status = new HashMap<String, String>();
+		final Set<String> selected = new HashSet<String>();
+
+		VdbStatus(List<Map<String, Object>> vdbs, VdbFilter filter,
+				boolean previews, List<Map<String, Object>> selectedVdbs) {
+			this.source = vdbs;
+			this.filter = filter;
+			this.previews = previews;
+			for (Map<String, Object> vdb : vdbs) {
+				status.put(VdbActivityIndex.getKey(vdb.get(VDBComponent.VDBNAME), vdb.get(VDBComponent.VERSION)),
+						(String) vdb.get(VDBComponent.STATUS));
+			}
+			for (Map<String, Object> vdb : selectedVdbs) {
+				selected.add(VdbActivityIndex.getKey(vdb.get(VDBComponent.VDBNAME), vdb.get(VDBComponent.VERSION)));
+			}
+		}
+	}
+
+	/**
+	 * VDB versions brought into the inventory
+	 */
+	private volatile VdbFilter vdbFilter = VdbFilter.ALL;
+
+	/**
+	 * VDB versions found by the previous discovery scan
+	 */
+	private volatile Map<String, VDBDiscoveryComponent.DiscoveredVdb> discoveredVdbs = new HashMap<String, VDBDiscoveryComponent.DiscoveredVdb>();
+
+	/**
+	 * Discovery scan whose VDB details were last loaded, guarded by its own
+	 * lock so that the loading never holds up the other callers of this
+	 * component
+	 */
+	private final Object vdbDetailsLock = new Object();
+	private Map<String, VDBDiscoveryComponent.DiscoveredVdb> vdbDetailsLoaded;
+
+	/**
+	 * Last reported availability, with the failed probes since the last UP
+	 */
+	private AvailabilityType availability;
+	private long availabilityChecked;
+	private int availabilityFailures;
+
+	/**
+	 * Hash of the deployment names at the last availability check
+	 */
+	private Integer deploymentWatermark;
+
+	/**
+	 * Previous counter samples, for the rate and delta metrics
+	 */
+	private final RateTracker rateTracker = new RateTracker();
+
+	/**
+	 * Lifetimes of the requests that finished between two index builds
+	 */
+	private final RequestLatencyTracker latencyTracker = new RequestLatencyTracker();
+
+	/**
+	 * Bounded pool that reads the metrics of this component and its children
+	 * other than the VDBs
+	 */
+	private volatile MetricCollector metricCollector;
+
+	/**
+	 * Bounded pool that reads the metrics of the VDBs, so that many VDBs
+	 * polled together do not starve the Platform metrics
+	 */
+	private volatile MetricCollector vdbMetricCollector;
+
+	/**
+	 * Bounded pool that loads the details of the VDBs during discovery
+	 */
+	private volatile MetricCollector discoveryCollector;
+
+	/**
+	 * Background refreshes of the materialized views of all VDBs
+	 */
+	private volatile MatViewRefresher matViewRefresher;
 
 	@Override
 	public void start(ResourceContext context) {
 		this.setComponentName(context.getPluginConfiguration().getSimpleValue(	"name", null)); //$NON-NLS-1$
 		this.resourceConfiguration = context.getPluginConfiguration();
-		
+		configureVdbCache();
+		configureVdbFilter();
+		metricCollector = new MetricCollector(MetricCollector.DEFAULT_THREADS);
+		vdbMetricCollector = new MetricCollector("VDB Metric Collector", MetricCollector.DEFAULT_THREADS); //$NON-NLS-1$
+		discoveryCollector = new MetricCollector("VDB Discovery", 1); //$NON-NLS-1$
+		matViewRefresher = new MatViewRefresher(MatViewRefresher.DEFAULT_THREADS);
+		configureMetricCollector();
 		
 		try {
 			super.start(context);
@@ -82,12 +262,149 @@ public class PlatformComponent extends Facet {
 	}
 
 	@Override
-	public AvailabilityType getAvailability() {
+	public synchronized AvailabilityType getAvailability() {
 
+		long now = System.currentTimeMillis();
+		long cacheTime = PluginUtils.getLongValue(resourceConfiguration, AVAILABILITY_CACHE_TIME, 5000);
+		if (availability != null && now - availabilityChecked < cacheTime) {
+			return availability;
+		}
+
+		boolean up;
+		try {
+			up = probeAvailability();
+		} catch (Exception e) {
+			LOG.debug("Availability probe failed: " + e); //$NON-NLS-1$
+			up = false;
+		}
+		
+		// Only report DOWN after the configured number of failed probes in a row
+		long threshold = PluginUtils.getLongValue(resourceConfiguration, AVAILABILITY_FAILURE_THRESHOLD, 1);
+		if (up) {
+			availabilityFailures = 0;
+			availability = AvailabilityType.UP;
+			checkDeployments();
+		} else if (++availabilityFailures >= threshold || availability == null) {
+			availability = AvailabilityType.DOWN;
+		}
+		availabilityChecked = now;
+		return availability;
+	}
+	
+	/**
+	 * Compare the deployment names of the server with those of the previous
+	 * check, and ask for a discovery of the child resources as soon as a VDB
+	 * may have been deployed or undeployed, instead of waiting for the next
+	 * full discovery scan.
+	 */
+	private void checkDeployments() {
+		if (!PluginUtils.getBooleanValue(resourceConfiguration, DEPLOYMENT_WATCH, true)) {
+			return;
+		}
+		try {
+			Result result = getASConnection().execute(new ReadChildrenNames(new Address(), ASSystem.Operations.DEPLOYMENT));
+			if (result == null || !result.isSuccess() || !(result.getResult() instanceof List)) {
+				return;
+			}
+			List<String> names = new ArrayList<String>((List<String>) result.getResult());
+			Collections.sort(names);
+			Integer watermark = Integer.valueOf(names.hashCode());
+			if (deploymentWatermark != null && !deploymentWatermark.equals(watermark)) {
+				LOG.debug("Deployments changed, requesting discovery of VDBs"); //$NON-NLS-1$
+				vdbCache.invalidateAll();
+				translatorCatalogue = null;
+				resourceContext.getInventoryContext().requestDeferredChildResourcesDiscovery();
+			}
+			deploymentWatermark = watermark;
+		} catch (Exception e) {
+			LOG.debug("Failed to check the deployments: " + e); //$NON-NLS-1$
+		}
+	}
+	
+	/**
+	 * Read a single attribute of the teiid subsystem, unless the full
+	 * resource read was configured.
+	 */
+	private boolean probeAvailability() {
 		Address address = DmrUtil.getTeiidAddress();
 		Result result;
-		result = getASConnection().execute(new ReadResource(address));
-		return (result.isSuccess()) ? AvailabilityType.UP: AvailabilityType.DOWN;
+		if (AVAILABILITY_PROBE_READ_RESOURCE.equals(resourceConfiguration.getSimpleValue(AVAILABILITY_PROBE, AVAILABILITY_PROBE_ATTRIBUTE))) {
+			result = getASConnection().execute(new ReadResource(address));
+		} else {
+			result = getASConnection().execute(new ReadAttribute(address, RUNTIME_VERSION));
+			if (result != null && result.isSuccess()) {
+				checkRuntimeVersion(result.getResult());
+			}
+		}
+		return result != null && result.isSuccess();
+	}
+
+	/**
+	 * Drop the translator catalogue if it was read from another runtime
+	 * version
+	 */
+	private void checkRuntimeVersion(Object runtimeVersion) {
+		TranslatorCatalogue catalogue = translatorCatalogue;
+		if (catalogue != null && !String.valueOf(runtimeVersion).equals(catalogue.getRuntimeVersion())) {
+			LOG.debug("Runtime version changed to " + runtimeVersion + ", dropping the translator catalogue"); //$NON-NLS-1$ //$NON-NLS-2$
+			translatorCatalogue = null;
+		}
+	}
+
+	/**
+	 * Return the translators of the runtime, reading them from the server
+	 * only if the runtime version or the deployments changed since the last
+	 * read. The attribute availability probe compares the runtime version;
+	 * with the other probe it is compared here, at most once per availability
+	 * cache time. Translators deployed or undeployed while the deployments are
+	 * not watched are only seen after a change of the runtime version or a
+	 * restart of this component.
+	 *
+	 * @return the translator catalogue, or null if it could not be read
+	 */
+	public TranslatorCatalogue getTranslatorCatalogue() {
+		TranslatorCatalogue catalogue = translatorCatalogue;
+		if (catalogue != null && !isRuntimeVersionCheckDue()) {
+			return catalogue;
+		}
+		synchronized (translatorCatalogueLock) {
+			Address address = DmrUtil.getTeiidAddress();
+			catalogue = translatorCatalogue;
+			if (catalogue != null && isRuntimeVersionCheckDue()) {
+				Result version = getASConnection().execute(new ReadAttribute(address, RUNTIME_VERSION));
+				translatorCatalogueChecked = System.currentTimeMillis();
+				if (version != null && version.isSuccess()) {
+					checkRuntimeVersion(version.getResult());
+				}
+				catalogue = translatorCatalogue;
+			}
+			if (catalogue != null) {
+				return catalogue;
+			}
+			Result version = getASConnection().execute(new ReadAttribute(address, RUNTIME_VERSION));
+			Result result = TeiidModuleView.executeOperation(getASConnection(), Platform.Operations.lIST_TRANSLATORS, address, null);
+			if (result == null || !result.isSuccess() || !(result.getResult() instanceof List)) {
+				return null;
+			}
+			catalogue = new TranslatorCatalogue(version != null && version.isSuccess() ? String.valueOf(version.getResult()) : null,
+					(List<Map<String, Object>>) result.getResult());
+			translatorCatalogueChecked = System.currentTimeMillis();
+			translatorCatalogue = catalogue;
+			return catalogue;
+		}
+	}
+
+	/**
+	 * @return true if the availability probe does not compare the runtime
+	 *         version, and it was not compared within the availability cache
+	 *         time
+	 */
+	private boolean isRuntimeVersionCheckDue() {
+		if (!AVAILABILITY_PROBE_READ_RESOURCE.equals(resourceConfiguration.getSimpleValue(AVAILABILITY_PROBE, AVAILABILITY_PROBE_ATTRIBUTE))) {
+			return false;
+		}
+		long cacheTime = PluginUtils.getLongValue(resourceConfiguration, AVAILABILITY_CACHE_TIME, 5000);
+		return System.currentTimeMillis() - translatorCatalogueChecked >= cacheTime;
 	}
 
 	@Override
@@ -104,28 +421,77 @@ public class PlatformComponent extends Facet {
 		} else if (name.equals(Platform.Operations.DEPLOY_VDB_BY_URL)) {
 			valueMap.put(Operation.Value.VDB_URL, configuration.getSimple(Operation.Value.VDB_URL).getStringValue());
 			valueMap.put(Operation.Value.VDB_NAME, configuration.getSimple(Operation.Value.VDB_NAME).getStringValue());
+		} else if (name.equals(Platform.Operations.GET_SESSIONS) || name.equals(Platform.Operations.GET_REQUESTS)
+				|| name.equals(Platform.Operations.KILL_REQUESTS) || name.equals(Platform.Operations.KILL_SESSIONS)) {
+			valueMap.put(Operation.Value.VDB_NAME, configuration.getSimpleValue(Operation.Value.VDB_NAME, null));
+			valueMap.put(Operation.Value.VDB_VERSION, configuration.getSimpleValue(Operation.Value.VDB_VERSION, null));
+			setListArguments(configuration, valueMap);
 		}
 	}
 
 	@Override
 	public void getValues(MeasurementReport report, Set<MeasurementScheduleRequest> requests) throws Exception {
 
-		TeiidModuleView view = new TeiidModuleView();
+		// Share each DMR result between all metrics of this collection cycle
+		ManagementSnapshot snapshot = new ManagementSnapshot(getASConnection());
+		final TeiidModuleView view = new TeiidModuleView(snapshot);
+		view.setRateTracker(rateTracker);
+		view.setLatencyTracker(latencyTracker);
 
-		Map<String, Object> valueMap = new HashMap<String, Object>();
+		final Map<String, Object> valueMap = new HashMap<String, Object>();
 
 		try {
+			List<String> metricNames = new ArrayList<String>(requests.size());
 			for (MeasurementScheduleRequest request : requests) {
-				String name = request.getName();
-				LOG.debug("Measurement name = " + name); //$NON-NLS-1$
+				metricNames.add(request.getName());
+			}
+
+			// The lists behind the index are only read when the VDB components,
+			// the latency metrics or the new query and session rates use
+			// them; the counts alone are served without materializing them
+			boolean indexNeeded = activityIndexWanted;
+			activityIndexWanted = false;
+			for (String metricName : metricNames) {
+				if (TeiidModuleView.isLatencyMetric(metricName)
+						|| metricName.equals(Platform.Metrics.NEW_REQUEST_RATE)
+						|| metricName.equals(Platform.Metrics.NEW_SESSION_RATE)) {
+					indexNeeded = true;
+				}
+			}
 
-				// Initialize any parameters to be used in the retrieval of
-				// metric values
+			if (PluginUtils.getBooleanValue(resourceConfiguration, COMPOSITE_METRIC_COLLECTION, false)) {
+				// Fetch everything the scheduled metrics need in one round trip
+				view.prefetchPlatformMetrics(metricNames, indexNeeded);
+			}
+			
+			// Refresh the index before the metrics are read: it closes the
+			// latency interval
+			if (indexNeeded) {
+				refreshActivityIndex(snapshot);
+			}
 
-				Object metric = view.getMetric(getASConnection(),
-						getComponentType(), this.getComponentIdentifier(),
-						name, valueMap);
+			// Read the metrics in parallel; a late one is dropped from this report
+			Map<String, Object> values = getMetricCollector().collect(metricNames,
+					new MetricCollector.MetricReader() {
+						public Object read(String name) throws Exception {
+							LOG.debug("Measurement name = " + name); //$NON-NLS-1$
+							if (name.equals(Platform.Metrics.SKIPPED_METRICS)) {
+								return Long.valueOf(getMetricCollector().getSkippedCount()
+										+ getVdbMetricCollector().getSkippedCount());
+							}
+							return view.getMetric(getASConnection(),
+									getComponentType(), getComponentIdentifier(),
+									name, valueMap);
+						}
+					});
 
+			for (MeasurementScheduleRequest request : requests) {
+				Object metric = values.get(request.getName());
+
+				if (metric == null) {
+					// skipped, failed, or derived metric without a previous sample yet
+					continue;
+				}
 				if (metric instanceof Double) {
 					report.addData(new MeasurementDataNumeric(request, (Double) metric));
 				}
@@ -139,15 +505,184 @@ public class PlatformComponent extends Facet {
 					LOG.error("Metric value must be a numeric value"); //$NON-NLS-1$
 				}
 			}
+
+			// Lists read for the metrics anyway are not wasted
+			if (!indexNeeded
+					&& snapshot.contains(Platform.Operations.GET_SESSIONS, null)
+					&& snapshot.contains(Platform.Operations.GET_REQUESTS, null)
+					&& snapshot.contains(Platform.Operations.GET_LONGRUNNINGQUERIES, null)) {
+				refreshActivityIndex(snapshot);
+			}
 		} catch (Exception e) {
 			LOG.error("Failed to obtain measurement [" + name 	+ "]. Cause: " + e); //$NON-NLS-1$ //$NON-NLS-2$
 			throw (e);
 		}
 	}
 
+	/**
+	 * Returns the session and request index shared by the VDB components. The
+	 * index is rebuilt when it is older than the configured maximum age, which
+	 * only happens when the Platform metrics are not being collected often
+	 * enough to keep it fresh. Reading it also has the next Platform
+	 * collection refresh it.
+	 */
+	public VdbActivityIndex getActivityIndex() {
+		activityIndexWanted = true;
+		VdbActivityIndex index = activityIndex;
+		long maxAge = PluginUtils.getLongValue(resourceConfiguration, ACTIVITY_INDEX_MAX_AGE, 30000);
+		if (index == null || index.getTimestamp() + maxAge < System.currentTimeMillis()) {
+			synchronized (activityIndexLock) {
+				index = activityIndex;
+				if (index == null || index.getTimestamp() + maxAge < System.currentTimeMillis()) {
+					index = refreshActivityIndex(new ManagementSnapshot(getASConnection()));
+				}
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Returns the status of a VDB version from one list-vdbs result, read at
+	 * most once per availability window and shared by all VDB and data role
+	 * components. Concurrent callers share the read of the VDB cache, without
+	 * holding this component.
+	 * 
+	 * @return the status, or null if the VDB is not deployed or the VDBs could
+	 *         not be read
+	 */
+	public String getVdbStatus(String vdbName, String vdbVersion) {
+		VdbStatus status = getVdbStatus();
+		return status == null ? null : status.status.get(VdbActivityIndex.getKey(vdbName, vdbVersion));
+	}
+
+	/**
+	 * Tells whether a VDB version is selected for the inventory by the preview
+	 * setting and the VDB filter, from the same list-vdbs result as
+	 * {@link #getVdbStatus(String, String)}. A VDB discovered before it was
+	 * filtered out stays in the inventory, but its components and children do
+	 * no further work.
+	 * 
+	 * @return true if the VDB is selected, or the VDBs could not be read
+	 */
+	public boolean isVdbSelected(String vdbName, String vdbVersion) {
+		VdbStatus status = getVdbStatus();
+		return status == null || status.selected.contains(VdbActivityIndex.getKey(vdbName, vdbVersion));
+	}
+
+	private VdbStatus getVdbStatus() {
+		long window = PluginUtils.getLongValue(resourceConfiguration, VDB_AVAILABILITY_WINDOW, 30000);
+		List<Map<String, Object>> vdbs = vdbCache.getVdbs(getASConnection(), window);
+		if (vdbs == null) {
+			return null;
+		}
+		VdbFilter filter = vdbFilter;
+		boolean previews = isDisplayPreviewVdbs();
+		VdbStatus status = vdbStatus;
+		if (status == null || status.source != vdbs || status.filter != filter || status.previews != previews) {
+			status = new VdbStatus(vdbs, filter, previews, selectVdbs(vdbs, filter, previews));
+			vdbStatus = status;
+		}
+		return status;
+	}
+
+	/**
+	 * @param vdbs
+	 *            <code>list-vdbs</code> result
+	 * @return the VDBs brought into the inventory: preview VDBs only if they
+	 *         are displayed, then those the VDB filter selects, so that hidden
+	 *         preview VDBs do not count against the latest versions
+	 */
+	List<Map<String, Object>> selectVdbs(List<Map<String, Object>> vdbs) {
+		return selectVdbs(vdbs, vdbFilter, isDisplayPreviewVdbs());
+	}
+
+	private static List<Map<String, Object>> selectVdbs(List<Map<String, Object>> vdbs,
+			VdbFilter filter, boolean previews) {
+		if (!previews) {
+			List<Map<String, Object>> visible = new ArrayList<Map<String, Object>>(vdbs.size());
+			for (Map<String, Object> vdb : vdbs) {
+				if (!VDBDiscoveryComponent.isPreview(vdb)) {
+					visible.add(vdb);
+				}
+			}
+			vdbs = visible;
+		}
+		return filter.filter(vdbs);
+	}
+
+	private boolean isDisplayPreviewVdbs() {
+		return PluginUtils.getBooleanValue(resourceConfiguration, DISPLAY_PREVIEW_VDBS, false);
+	}
+	
+	/**
+	 * Returns the translator usage shared by the translator components, built
+	 * from the cached VDB list and the current activity index.
+	 * 
+	 * @return the usage, or null if the VDBs could not be read
+	 */
+	public TranslatorActivity getTranslatorActivity() {
+		VdbActivityIndex index = getActivityIndex();
+		TranslatorActivity activity = translatorActivity;
+		if (activity != null && activity.getTimestamp() >= index.getTimestamp()) {
+			return activity;
+		}
+		// read outside the lock, which only guards building from the previous usage
+		List<Map<String, Object>> vdbs = vdbCache.getVdbs(getASConnection());
+		if (vdbs == null) {
+			return null;
+		}
+		synchronized (translatorActivityLock) {
+			activity = translatorActivity;
+			if (activity == null || activity.getTimestamp() < index.getTimestamp()) {
+				activity = new TranslatorActivity(vdbs, index, activity);
+				translatorActivity = activity;
+			}
+			return activity;
+		}
+	}
+	
+	private VdbActivityIndex refreshActivityIndex(ManagementSnapshot snapshot) {
+		VdbActivityIndex index = VdbActivityIndex.build(snapshot);
+		latencyTracker.update(index);
+		// The collection and the VDB components refresh concurrently; an
+		// index built before the current one is not published over it
+		synchronized (activityIndexPublishLock) {
+			VdbActivityIndex current = activityIndex;
+			if (current != null && current.getTimestamp() > index.getTimestamp()) {
+				return current;
+			}
+			activityIndex = index;
+		}
+		return index;
+	}
+
 	@Override
 	public void stop() {
-		// TODO Auto-generated method stub
+		vdbCache.invalidateAll();
+		translatorCatalogue = null;
+		rateTracker.clear();
+		latencyTracker.clear();
+		synchronized (this) {
+			availability = null;
+			availabilityFailures = 0;
+			deploymentWatermark = null;
+		}
+		MetricCollector collector = metricCollector;
+		if (collector != null) {
+			collector.shutdown();
+		}
+		collector = vdbMetricCollector;
+		if (collector != null) {
+			collector.shutdown();
+		}
+		collector = discoveryCollector;
+		if (collector != null) {
+			collector.shutdown();
+		}
+		MatViewRefresher refresher = matViewRefresher;
+		if (refresher != null) {
+			refresher.shutdown();
+		}
 		super.stop();
 	}
 	
@@ -187,8 +722,159 @@ public class PlatformComponent extends Facet {
 
 		Configuration resourceConfig = report.getConfiguration();
 		resourceConfiguration = resourceConfig.deepCopy();
+		configureVdbCache();
+		VdbFilter previousFilter = vdbFilter;
+		configureVdbFilter();
+		configureMetricCollector();
 
 		super.updateResourceConfiguration(report);
+
+		if (!vdbFilter.equals(previousFilter)) {
+			// bring the VDB inventory in line with the new filter
+			resourceContext.getInventoryContext().requestDeferredChildResourcesDiscovery();
+		}
+	}
+	
+	private void configureVdbCache() {
+		vdbCache.setTimeToLive(PluginUtils.getLongValue(resourceConfiguration, VDB_CACHE_TIME_TO_LIVE, VdbCache.DEFAULT_TIME_TO_LIVE));
+		vdbCache.setMaxEntries((int) PluginUtils.getLongValue(resourceConfiguration, VDB_CACHE_MAX_ENTRIES, VdbCache.DEFAULT_MAX_ENTRIES));
+	}
+	
+	private void configureVdbFilter() {
+		try {
+			vdbFilter = new VdbFilter(resourceConfiguration.getSimpleValue(VDB_INCLUDE_PATTERN, null),
+					resourceConfiguration.getSimpleValue(VDB_EXCLUDE_PATTERN, null),
+					(int) PluginUtils.getLongValue(resourceConfiguration, VDB_LATEST_VERSIONS, 0));
+		} catch (PatternSyntaxException e) {
+			LOG.error("Invalid VDB filter pattern, all VDBs are discovered: " + e.getMessage()); //$NON-NLS-1$
+			vdbFilter = VdbFilter.ALL;
+		}
+	}
+	
+	public VdbFilter getVdbFilter() {
+		return vdbFilter;
+	}
+	
+	Map<String, VDBDiscoveryComponent.DiscoveredVdb> getDiscoveredVdbs() {
+		return discoveredVdbs;
+	}
+	
+	void setDiscoveredVdbs(Map<String, VDBDiscoveryComponent.DiscoveredVdb> discoveredVdbs) {
+		this.discoveredVdbs = discoveredVdbs;
+		MetricCollector collector = vdbMetricCollector;
+		if (collector != null) {
+			collector.setThreads(getVdbMetricThreads());
+		}
+	}
+	
+	public RequestLatencyTracker getLatencyTracker() {
+		return latencyTracker;
+	}
+	
+	public VdbCache getVdbCache() {
+		return vdbCache;
+	}
+	
+	private void configureMetricCollector() {
+		MetricCollector collector = metricCollector;
+		if (collector == null) {
+			return;
+		}
+		collector.setThreads((int) PluginUtils.getLongValue(resourceConfiguration, METRIC_COLLECTION_THREADS, MetricCollector.DEFAULT_THREADS));
+		collector.setTimeout(PluginUtils.getLongValue(resourceConfiguration, METRIC_TIMEOUT, MetricCollector.DEFAULT_TIMEOUT));
+		collector = vdbMetricCollector;
+		if (collector != null) {
+			collector.setThreads(getVdbMetricThreads());
+			collector.setTimeout(PluginUtils.getLongValue(resourceConfiguration, METRIC_TIMEOUT, MetricCollector.DEFAULT_TIMEOUT));
+		}
+		collector = discoveryCollector;
+		if (collector != null) {
+			collector.setThreads((int) PluginUtils.getLongValue(resourceConfiguration, DISCOVERY_THREADS, DEFAULT_DISCOVERY_THREADS));
+			collector.setTimeout(PluginUtils.getLongValue(resourceConfiguration, DISCOVERY_TIMEOUT, DEFAULT_DISCOVERY_TIMEOUT));
+		}
+		MatViewRefresher refresher = matViewRefresher;
+		if (refresher != null) {
+			refresher.setThreads((int) PluginUtils.getLongValue(resourceConfiguration, MATVIEW_REFRESH_THREADS, MatViewRefresher.DEFAULT_THREADS));
+			refresher.setTimeout(PluginUtils.getLongValue(resourceConfiguration, MATVIEW_REFRESH_TIMEOUT, MatViewRefresher.DEFAULT_TIMEOUT));
+		}
+	}
+	
+	/**
+	 * @return the configured number of VDB metric threads, or one per
+	 *         {@value #VDBS_PER_METRIC_THREAD} discovered VDBs, at least the
+	 *         default of the shared pool and at most
+	 *         {@value #MAX_VDB_METRIC_THREADS}
+	 */
+	private int getVdbMetricThreads() {
+		long threads = PluginUtils.getLongValue(resourceConfiguration, VDB_METRIC_COLLECTION_THREADS, DEFAULT_VDB_METRIC_COLLECTION_THREADS);
+		if (threads > 0) {
+			return (int) threads;
+		}
+		int vdbs = discoveredVdbs.size();
+		return Math.max(MetricCollector.DEFAULT_THREADS, Math.min(MAX_VDB_METRIC_THREADS,
+				(vdbs + VDBS_PER_METRIC_THREAD - 1) / VDBS_PER_METRIC_THREAD));
+	}
+
+	public MetricCollector getMetricCollector() {
+		return metricCollector;
+	}
+
+	public MetricCollector getVdbMetricCollector() {
+		return vdbMetricCollector;
+	}
+
+	public MatViewRefresher getMatViewRefresher() {
+		return matViewRefresher;
+	}
+
+	/**
+	 * Load the <code>get-vdb</code> result of every discovered VDB that is not
+	 * in the VDB cache, concurrently on the discovery pool, so that the
+	 * discovery of the children of the other VDBs is served from the cache.
+	 * Does nothing unless discovery threads are configured and the VDB cache
+	 * is enabled. The VDBs are loaded once per discovery scan, and not at all
+	 * if the scan found more VDBs than the cache holds, as the first ones
+	 * would be evicted again before their children are discovered. VDBs not
+	 * loaded within the discovery timeout are left to be loaded on demand.
+	 */
+	void loadVdbDetails() {
+		final MetricCollector collector = discoveryCollector;
+		if (collector == null
+				|| PluginUtils.getLongValue(resourceConfiguration, DISCOVERY_THREADS, DEFAULT_DISCOVERY_THREADS) <= 0
+				|| vdbCache.getTimeToLive() <= 0) {
+			return;
+		}
+		final Map<String, VDBDiscoveryComponent.DiscoveredVdb> vdbs = discoveredVdbs;
+		if (vdbs.size() > vdbCache.getMaxEntries()) {
+			return;
+		}
+		// the other discovery threads of this scan wait for the one loading
+		synchronized (vdbDetailsLock) {
+			if (vdbs == vdbDetailsLoaded) {
+				return;
+			}
+			vdbDetailsLoaded = vdbs;
+			List<String> missing = new ArrayList<String>();
+			for (Map.Entry<String, VDBDiscoveryComponent.DiscoveredVdb> entry : vdbs.entrySet()) {
+				VDBDiscoveryComponent.DiscoveredVdb vdb = entry.getValue();
+				if (!vdbCache.isCached(vdb.name, vdb.version)) {
+					missing.add(entry.getKey());
+				}
+			}
+			if (missing.size() < 2) {
+				return;
+			}
+			final ASConnection connection = getASConnection();
+			long start = System.currentTimeMillis();
+			Map<String, Object> loaded = collector.collect(missing, new MetricCollector.MetricReader() {
+				public Object read(String key) throws Exception {
+					VDBDiscoveryComponent.DiscoveredVdb vdb = vdbs.get(key);
+					return vdbCache.get(connection, vdb.name, vdb.version);
+				}
+			});
+			LOG.debug("Loaded " + loaded.size() + " of " + missing.size() //$NON-NLS-1$ //$NON-NLS-2$
+					+ " VDBs in " + (System.currentTimeMillis() - start) + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
 	}
 	
 	/**
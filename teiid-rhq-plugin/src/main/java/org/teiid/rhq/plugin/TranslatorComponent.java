@@ -22,7 +22,6 @@
 package org.teiid.rhq.plugin;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -38,12 +37,10 @@ import org.rhq.core.domain.measurement.MeasurementScheduleRequest;
 import org.rhq.core.pluginapi.inventory.ResourceContext;
 import org.rhq.core.pluginapi.measurement.MeasurementFacet;
 import org.rhq.modules.plugins.jbossas7.ASConnection;
-import org.rhq.modules.plugins.jbossas7.json.Address;
-import org.rhq.modules.plugins.jbossas7.json.Operation;
-import org.rhq.modules.plugins.jbossas7.json.Result;
-import org.teiid.rhq.plugin.util.DmrUtil;
+import org.teiid.rhq.admin.TranslatorActivity;
+import org.teiid.rhq.admin.TranslatorCatalogue;
 import org.teiid.rhq.plugin.util.PluginConstants;
-import org.teiid.rhq.plugin.util.PluginConstants.ComponentType.Platform;
+import org.teiid.rhq.plugin.util.PluginConstants.ComponentType.Translator;
 
 /**
  * Component class for the Teiid Translator.
@@ -88,18 +85,30 @@ public class TranslatorComponent extends Facet {
 	 * @see MeasurementFacet#getValues(MeasurementReport, Set)
 	 */
 	public void getValues(MeasurementReport report, Set<MeasurementScheduleRequest> requests) {
+		// Computed by the Platform from data shared by all translators
+		TranslatorActivity activity = getPlatformComponent().getTranslatorActivity();
+		if (activity == null) {
+			LOG.error("Failed to obtain translator measurements, VDBs could not be read"); //$NON-NLS-1$
+			return;
+		}
+		String translatorName = resourceContext.getResourceKey();
+		
 		for (MeasurementScheduleRequest request : requests) {
 			String name = request.getName();
 
-			// TODO: based on the request information, you must collect the
-			// requested measurement(s)
-			// you can use the name of the measurement to determine what you
-			// actually need to collect
 			try {
-				Number value = new Integer(1); // dummy measurement value -
-				// this should come from the
-				// managed resource
-				report.addData(new MeasurementDataNumeric(request, value.doubleValue()));
+				Number value = null;
+				if (name.equals(Translator.Metrics.MODEL_COUNT)) {
+					value = new Integer(activity.getModelCount(translatorName));
+				} else if (name.equals(Translator.Metrics.ACTIVE_SOURCE_REQUESTS)) {
+					value = new Double(activity.getActiveSourceRequests(translatorName));
+				} else if (name.equals(Translator.Metrics.SOURCE_REQUEST_RATE)) {
+					// null until there is a previous sample
+					value = activity.getSourceRequestRate(translatorName);
+				}
+				if (value != null) {
+					report.addData(new MeasurementDataNumeric(request, value.doubleValue()));
+				}
 			} catch (Exception e) {
 				LOG.error("Failed to obtain measurement [" + name 	+ "]. Cause: " + e); //$NON-NLS-1$ //$NON-NLS-2$
 			}
@@ -116,37 +125,32 @@ public class TranslatorComponent extends Facet {
 	@Override
 	public Configuration loadResourceConfiguration() {
 
-		Address addr = DmrUtil.getTeiidAddress();
-		Operation op = new Operation(Platform.Operations.lIST_TRANSLATORS, addr);
-		Result result = getASConnection().execute(op);
-		ArrayList<LinkedHashMap<String, Object>> translatorlist = (ArrayList<LinkedHashMap<String, Object>>) result.getResult();
-		Configuration configuration = null;
+		// Get plugin config map for translators
+		Configuration configuration = resourceContext.getPluginConfiguration();
 
-		//Iterate through Translators
-		for (LinkedHashMap<String, Object> map : translatorlist) {
+		TranslatorCatalogue catalogue = getPlatformComponent().getTranslatorCatalogue();
+		Map<String, Object> map = catalogue == null ? null : catalogue.get(resourceContext.getResourceKey());
+		if (map == null) {
+			return configuration;
+		}
 			
-			String translatorKey = (String) map.get(TranslatorComponent.TRANSLATORNAME);
-			String translatorName = translatorKey;
-			String moduleType =  (String) map.get(TranslatorComponent.MODULENAME);;
-			String description = (String) map.get(TranslatorComponent.DESCRIPTION);
+		String translatorName = (String) map.get(TranslatorComponent.TRANSLATORNAME);
+		String moduleType =  (String) map.get(TranslatorComponent.MODULENAME);
+		String description = (String) map.get(TranslatorComponent.DESCRIPTION);
 
-			// Get plugin config map for translators
-			configuration = resourceContext.getPluginConfiguration();
-
-			//Set common properties
-			configuration.put(new PropertySimple("name", translatorName));//$NON-NLS-1$
-			configuration.put(new PropertySimple("moduleName",moduleType));//$NON-NLS-1$	
-			configuration.put(new PropertySimple("description",description));//$NON-NLS-1$	
-			
-			 // Add to return values
-			// First get translator specific properties
-			ArrayList<Map<String,String>> translatorProps = (ArrayList<Map<String, String>>) map.get(TranslatorComponent.PROPERTIES);
-			PropertyList list = new PropertyList("translatorList");//$NON-NLS-1$
-			PropertyMap propMap = null;
+		//Set common properties
+		configuration.put(new PropertySimple("name", translatorName));//$NON-NLS-1$
+		configuration.put(new PropertySimple("moduleName",moduleType));//$NON-NLS-1$	
+		configuration.put(new PropertySimple("description",description));//$NON-NLS-1$	
+		
+		// Then the translator specific properties
+		ArrayList<Map<String,String>> translatorProps = (ArrayList<Map<String, String>>) map.get(TranslatorComponent.PROPERTIES);
+		PropertyList list = new PropertyList("translatorList");//$NON-NLS-1$
+		PropertyMap propMap = null;
+		if (translatorProps != null) {
 			getTranslatorValues(translatorProps, propMap, list);
-		    configuration.put(list);
-			
 		}
+	    configuration.put(list);
 			
 		return configuration;
 
@@ -167,7 +171,11 @@ public class TranslatorComponent extends Facet {
 
 	@Override
 	public ASConnection getASConnection() {
-		return ((PlatformComponent)this.resourceContext.getParentResourceComponent()).getASConnection();
+		return getPlatformComponent().getASConnection();
+	}
+	
+	private PlatformComponent getPlatformComponent() {
+		return (PlatformComponent)this.resourceContext.getParentResourceComponent();
 	}
 	
 }
\ No newline at end of file
@@ -21,9 +21,8 @@
  */
 package org.teiid.rhq.plugin;
 
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -32,13 +31,8 @@ import org.rhq.core.pluginapi.inventory.DiscoveredResourceDetails;
 import org.rhq.core.pluginapi.inventory.InvalidPluginConfigurationException;
 import org.rhq.core.pluginapi.inventory.ResourceDiscoveryComponent;
 import org.rhq.core.pluginapi.inventory.ResourceDiscoveryContext;
-import org.rhq.modules.plugins.jbossas7.ASConnection;
-import org.rhq.modules.plugins.jbossas7.json.Address;
-import org.rhq.modules.plugins.jbossas7.json.Operation;
-import org.rhq.modules.plugins.jbossas7.json.Result;
-import org.teiid.rhq.plugin.util.DmrUtil;
+import org.teiid.rhq.admin.TranslatorCatalogue;
 import org.teiid.rhq.plugin.util.PluginConstants;
-import org.teiid.rhq.plugin.util.PluginConstants.ComponentType.Platform;
 
 /**
  * Discovery component for Teiid Translator instances
@@ -52,17 +46,14 @@ public class TranslatorDiscoveryComponent implements ResourceDiscoveryComponent
 			ResourceDiscoveryContext discoveryContext)
 			throws InvalidPluginConfigurationException, Exception {
 		Set<DiscoveredResourceDetails> discoveredResources = new HashSet<DiscoveredResourceDetails>();
-		ASConnection connection = ((PlatformComponent) discoveryContext
-				.getParentResourceComponent()).getASConnection();
-		
-		Address addr = DmrUtil.getTeiidAddress();
-		Operation op = new Operation(Platform.Operations.lIST_TRANSLATORS, addr);
-		Result result = connection.execute(op);
-		ArrayList<LinkedHashMap<String, Object>> translatorlist = (ArrayList<LinkedHashMap<String, Object>>) result.getResult();
-	
+		TranslatorCatalogue catalogue = ((PlatformComponent) discoveryContext
+				.getParentResourceComponent()).getTranslatorCatalogue();
+		if (catalogue == null) {
+			throw new Exception("Failed to read the translators"); //$NON-NLS-1$
+		}
 
-		//Iterate through VDBs
-		for (LinkedHashMap<String, Object> map : translatorlist) {
+		//Iterate through translators
+		for (Map<String, Object> map : catalogue.getTranslators()) {
 			
 			String translatorKey = (String) map.get(TranslatorComponent.TRANSLATORNAME);
 			String translatorName = translatorKey;
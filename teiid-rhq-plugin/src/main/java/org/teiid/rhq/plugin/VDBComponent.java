@@ -48,7 +48,13 @@ import org.rhq.core.pluginapi.inventory.ResourceContext;
 import org.rhq.modules.plugins.jbossas7.ASConnection;
 import org.rhq.modules.plugins.jbossas7.json.Address;
 import org.rhq.modules.plugins.jbossas7.json.Result;
+import org.teiid.rhq.admin.DataRoleActivity;
+import org.teiid.rhq.admin.ManagementSnapshot;
+import org.teiid.rhq.admin.MetricCollector;
+import org.teiid.rhq.admin.ModelActivity;
 import org.teiid.rhq.admin.TeiidModuleView;
+import org.teiid.rhq.admin.VdbActivityIndex;
+import org.teiid.rhq.plugin.objects.ExecutedResult;
 import org.teiid.rhq.plugin.util.DmrUtil;
 import org.teiid.rhq.plugin.util.PluginConstants;
 import org.teiid.rhq.plugin.util.PluginConstants.ComponentType.Platform;
@@ -100,6 +106,21 @@ public class VDBComponent extends Facet {
 	public static final String BASE_TYPE = "base-type"; //$NON-NLS-1$
 	public static final String MODULE_NAME = "module-name"; //$NON-NLS-1$
 		
+	/**
+	 * Data role usage shared by the data role components of this VDB
+	 */
+	private DataRoleActivity dataRoleActivity;
+
+	/**
+	 * Source activity of the models, shared by all model components
+	 */
+	private ModelActivity modelActivity;
+
+	/**
+	 * Data policies by name, with the get-vdb result they were taken from
+	 */
+	private Map<String, Object> dataPoliciesSource;
+	private Map<String, Map<String, Object>> dataPolicies;
 
 	/*
 	 * (non-Javadoc)
@@ -131,7 +152,10 @@ public class VDBComponent extends Facet {
 				VDB.VERSION, null));
 
 		// Parameter logic for VDB Operations
-		if (name.equals(VDB.Operations.KILL_REQUEST)) {
+		if (name.equals(VDB.Operations.GET_SESSIONS) || name.equals(VDB.Operations.GET_REQUESTS)
+				|| name.equals(VDB.Operations.KILL_REQUESTS) || name.equals(VDB.Operations.KILL_SESSIONS)) {
+			setListArguments(configuration, valueMap);
+		} else if (name.equals(VDB.Operations.KILL_REQUEST)) {
 			valueMap.put(Operation.Value.REQUEST_ID, configuration.getSimple(
 					Operation.Value.REQUEST_ID).getLongValue());
 			valueMap.put(Operation.Value.SESSION_ID, configuration.getSimple(
@@ -155,6 +179,43 @@ public class VDBComponent extends Facet {
 			valueMap.put(Operation.Value.INVALIDATE_MATVIEW, configuration
 					.getSimple(Operation.Value.INVALIDATE_MATVIEW)
 					.getBooleanValue());
+			PropertySimple timeout = configuration.getSimple(Operation.Value.MATVIEW_REFRESH_TIMEOUT);
+			if (timeout != null && timeout.getStringValue() != null) {
+				valueMap.put(Operation.Value.MATVIEW_REFRESH_TIMEOUT, timeout.getLongValue());
+			}
+		} else if (name.equals(VDB.Operations.REFRESH_MATVIEWS)) {
+			valueMap.put(Operation.Value.MATVIEW_LIST, configuration
+					.getSimpleValue(Operation.Value.MATVIEW_LIST, null));
+			valueMap.put(Operation.Value.INVALIDATE_MATVIEW, Boolean.valueOf(configuration
+					.getSimpleValue(Operation.Value.INVALIDATE_MATVIEW, "false"))); //$NON-NLS-1$
+			valueMap.put(Operation.Value.WAIT_UNTIL_FINISHED, Boolean.valueOf(configuration
+					.getSimpleValue(Operation.Value.WAIT_UNTIL_FINISHED, "false"))); //$NON-NLS-1$
+			PropertySimple parallelLimit = configuration.getSimple(Operation.Value.PARALLEL_LIMIT);
+			if (parallelLimit != null && parallelLimit.getStringValue() != null) {
+				valueMap.put(Operation.Value.PARALLEL_LIMIT, parallelLimit.getIntegerValue());
+			}
+			PropertySimple timeout = configuration.getSimple(Operation.Value.MATVIEW_REFRESH_TIMEOUT);
+			if (timeout != null && timeout.getStringValue() != null) {
+				valueMap.put(Operation.Value.MATVIEW_REFRESH_TIMEOUT, timeout.getLongValue());
+			}
+		} else if (name.equals(VDB.Operations.GET_MATVIEW_REFRESHES)
+				|| name.equals(VDB.Operations.CANCEL_MATVIEW_REFRESH)) {
+			valueMap.put(Operation.Value.MATVIEW_REFRESH_HANDLE, configuration == null ? null
+					: configuration.getSimpleValue(Operation.Value.MATVIEW_REFRESH_HANDLE, null));
+		}
+	}
+
+	@Override
+	protected void execute(ASConnection connection, ExecutedResult result,
+			Map<String, Object> valueMap) {
+		// Refreshes run in the background on the Platform's refresher
+		TeiidModuleView dqp = new TeiidModuleView();
+		dqp.setMatViewRefresher(getPlatformComponent().getMatViewRefresher());
+
+		try {
+			dqp.executeOperation(connection, result, valueMap);
+		} catch (Exception e) {
+			LOG.error("Failed to execute operation " + result.getOperationName(), e); //$NON-NLS-1$
 		}
 	}
 
@@ -165,9 +226,9 @@ public class VDBComponent extends Facet {
 	 */
 	@Override
 	public AvailabilityType getAvailability() {
-		Map<String, Object> map = getVdbMap(getASConnection(), this.deploymentName, this.resourceConfiguration.getSimple("version").getStringValue());
-		String status = (String) map.get(STATUS);
-		if (status.equals("ACTIVE")) {
+		// One list-vdbs per availability window serves every VDB
+		String status = getPlatformComponent().getVdbStatus(this.deploymentName, getVersion());
+		if ("ACTIVE".equals(status)) {
 			return AvailabilityType.UP;
 		}
 
@@ -182,22 +243,54 @@ public class VDBComponent extends Facet {
 		valueMap.put(VDB.VERSION, this.resourceConfiguration.getSimple("version").getStringValue());
 	}
 
+	/**
+	 * @return false if the VDB is left out by the current VDB filter or
+	 *         preview setting, in which case it and its children do no work
+	 */
+	public boolean isSelected() {
+		return getPlatformComponent().isVdbSelected(this.deploymentName, getVersion());
+	}
+
 	@Override
 	public void getValues(MeasurementReport report,
 			Set<MeasurementScheduleRequest> requests) throws Exception {
 
-		TeiidModuleView view = new TeiidModuleView();
+		if (!isSelected()) {
+			return;
+		}
+
+		// Session and request metrics come from the index shared by all VDBs
+		final TeiidModuleView view = new TeiidModuleView(new ManagementSnapshot(getASConnection(),
+				getPlatformComponent().getVdbCache()), getPlatformComponent().getActivityIndex());
+		view.setLatencyTracker(getPlatformComponent().getLatencyTracker());
+		view.setMatViewRefresher(getPlatformComponent().getMatViewRefresher());
 
-		Map<String, Object> valueMap = new HashMap<String, Object>();
+		final Map<String, Object> valueMap = new HashMap<String, Object>();
 		setMetricArguments(VDB.NAME, null, valueMap);
 
+		List<String> metricNames = new ArrayList<String>(requests.size());
+		for (MeasurementScheduleRequest request : requests) {
+			metricNames.add(request.getName());
+		}
+
+		// Read on the Platform's VDB collector; a late metric is left out of this report
+		Map<String, Object> values = getPlatformComponent().getVdbMetricCollector().collect(metricNames,
+				new MetricCollector.MetricReader() {
+					public Object read(String name) throws Exception {
+						LOG.debug("Measurement name = " + name); //$NON-NLS-1$
+						return view.getMetric(getASConnection(),
+								getComponentType(), getComponentIdentifier(), name,
+								valueMap);
+					}
+				});
+
 		for (MeasurementScheduleRequest request : requests) {
 			String name = request.getName();
-			LOG.debug("Measurement name = " + name); //$NON-NLS-1$
 
-			Object metricReturnObject = view.getMetric(getASConnection(),
-					getComponentType(), this.getComponentIdentifier(), name,
-					valueMap);
+			Object metricReturnObject = values.get(name);
+			if (metricReturnObject == null) {
+				continue;
+			}
 
 			try {
 				if (request.getName().equals(
@@ -243,7 +336,9 @@ public class VDBComponent extends Facet {
 								if (request
 										.getName()
 										.equals(
-												PluginConstants.ComponentType.VDB.Metrics.LONG_RUNNING_QUERIES)) {
+												PluginConstants.ComponentType.VDB.Metrics.LONG_RUNNING_QUERIES)
+										|| TeiidModuleView.isLatencyMetric(request.getName())
+										|| TeiidModuleView.isMatViewRefreshMetric(request.getName())) {
 									report.addData(new MeasurementDataNumeric(
 											request,
 											(Double) metricReturnObject));
@@ -287,6 +382,16 @@ public class VDBComponent extends Facet {
 		getPropertiesMap().put(VDB.NAME, vdbName);
 		getPropertiesMap().put(VDB.VERSION, vdbVersion);
 
+		try {
+			updateVdb(report, vdbName, vdbVersion);
+		} finally {
+			// Even a failed update may have applied some of the changes
+			invalidateVdbMap();
+		}
+	}
+
+	private void updateVdb(ConfigurationUpdateReport report, String vdbName,
+			String vdbVersion) {
 		// First update simple properties
 		super.updateResourceConfiguration(report);
 
@@ -327,14 +432,12 @@ public class VDBComponent extends Facet {
 				}
 			}
 		}
-		
-
 	}
 
 	@Override
 	public Configuration loadResourceConfiguration() {
 		
-		Map<String, Object> map = getVdbMap(getASConnection(), this.deploymentName, this.resourceConfiguration.getSimple("version").getStringValue());
+		Map<String, Object> map = getVdbMap();
 		
 		String vdbName = (String) map.get(VDBNAME);
 		Integer vdbVersion = (Integer) map.get(VERSION);
@@ -366,6 +469,75 @@ public class VDBComponent extends Facet {
 
 	}
 
+	/**
+	 * Returns this VDB as read by get-vdb, served from the {@link VdbCache}
+	 * of the parent platform component. The map must not be modified.
+	 */
+	public Map<String, Object> getVdbMap() {
+		return getPlatformComponent().getVdbCache().get(getASConnection(),
+				this.deploymentName, getVersion());
+	}
+
+	/**
+	 * Drop the cached get-vdb result of this VDB after it has been changed
+	 */
+	public void invalidateVdbMap() {
+		getPlatformComponent().getVdbCache().invalidate(this.deploymentName,
+				getVersion());
+	}
+
+	/**
+	 * Returns the data policies of this VDB by name, indexed once per get-vdb
+	 * result and shared by the discovery and the components of its data roles.
+	 */
+	synchronized Map<String, Map<String, Object>> getDataPolicies() {
+		Map<String, Object> vdbMap = getVdbMap();
+		if (vdbMap != dataPoliciesSource) {
+			Map<String, Map<String, Object>> policies = new LinkedHashMap<String, Map<String, Object>>();
+			List<Map<String, Object>> policyList = vdbMap == null ? null : (List<Map<String, Object>>) vdbMap.get(DATA_POLICIES);
+			if (policyList != null) {
+				for (Map<String, Object> policy : policyList) {
+					policies.put((String) policy.get(DataRoleComponent.POLICY_NAME), policy);
+				}
+			}
+			dataPolicies = policies;
+			dataPoliciesSource = vdbMap;
+		}
+		return dataPolicies;
+	}
+
+	/**
+	 * Returns the activity of the data roles of this VDB, rebuilt once for
+	 * every new activity index of the Platform and shared by all data role
+	 * components.
+	 */
+	synchronized DataRoleActivity getDataRoleActivity() {
+		VdbActivityIndex index = getPlatformComponent().getActivityIndex();
+		if (dataRoleActivity == null || dataRoleActivity.getTimestamp() != index.getTimestamp()) {
+			dataRoleActivity = new DataRoleActivity(getVdbMap(), this.deploymentName,
+					getVersion(), index, dataRoleActivity);
+		}
+		return dataRoleActivity;
+	}
+
+	/**
+	 * Returns the source activity of the physical models of this VDB, rebuilt
+	 * once for every new activity index of the Platform and shared by all
+	 * model components.
+	 */
+	synchronized ModelActivity getModelActivity() {
+		VdbActivityIndex index = getPlatformComponent().getActivityIndex();
+		if (modelActivity == null || modelActivity.getTimestamp() != index.getTimestamp()) {
+			modelActivity = new ModelActivity(getVdbMap(), this.deploymentName,
+					getVersion(), index, modelActivity);
+		}
+		return modelActivity;
+	}
+
+	String getVersion() {
+		return this.resourceConfiguration.getSimple("version").getStringValue();
+	}
+
 	public static Map<String, Object> getVdbMap(ASConnection connection,String vdbName, String vdbVersion) {
 		Address addr = DmrUtil.getTeiidAddress();
 		org.rhq.modules.plugins.jbossas7.json.Operation op = new org.rhq.modules.plugins.jbossas7.json.Operation(Platform.Operations.GET_VDB, addr);
@@ -578,8 +750,12 @@ public class VDBComponent extends Facet {
 
 	@Override
 	public ASConnection getASConnection() {
-		return ((PlatformComponent) this.resourceContext
-				.getParentResourceComponent()).getASConnection();
+		return getPlatformComponent().getASConnection();
+	}
+
+	public PlatformComponent getPlatformComponent() {
+		return (PlatformComponent) this.resourceContext
+				.getParentResourceComponent();
 	}
 
 }
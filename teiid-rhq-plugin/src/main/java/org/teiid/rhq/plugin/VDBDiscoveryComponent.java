@@ -21,9 +21,9 @@
  */
 package org.teiid.rhq.plugin;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -36,12 +36,8 @@ import org.rhq.core.pluginapi.inventory.InvalidPluginConfigurationException;
 import org.rhq.core.pluginapi.inventory.ResourceDiscoveryComponent;
 import org.rhq.core.pluginapi.inventory.ResourceDiscoveryContext;
 import org.rhq.modules.plugins.jbossas7.ASConnection;
-import org.rhq.modules.plugins.jbossas7.json.Address;
-import org.rhq.modules.plugins.jbossas7.json.Operation;
-import org.rhq.modules.plugins.jbossas7.json.Result;
+import org.teiid.rhq.admin.VdbActivityIndex;
 import org.teiid.rhq.plugin.util.PluginConstants;
-import org.teiid.rhq.plugin.util.DmrUtil;
-import org.teiid.rhq.plugin.util.PluginConstants.ComponentType.Platform;
 
 /**
  * Discovery component for VDBs
@@ -52,80 +48,152 @@ public class VDBDiscoveryComponent implements ResourceDiscoveryComponent {
 	private final Log log = LogFactory
 			.getLog(PluginConstants.DEFAULT_LOGGER_CATEGORY);
 
+	/**
+	 * A VDB version found by a discovery scan, kept by the Platform component
+	 * until the next scan to tell the changed VDBs from the others and to load
+	 * the details of the VDBs of the scan.
+	 *
+	 * The plugin configuration is a template that is never handed out; each
+	 * scan gets a copy of it, as the plugin container may change the details
+	 * it is given.
+	 */
+	static class DiscoveredVdb {
+		final int fingerprint;
+		final String name;
+		final String version;
+		private final Configuration pluginConfiguration;
+
+		DiscoveredVdb(int fingerprint, String name, String version,
+				Configuration pluginConfiguration) {
+			this.fingerprint = fingerprint;
+			this.name = name;
+			this.version = version;
+			this.pluginConfiguration = pluginConfiguration;
+		}
+
+		DiscoveredResourceDetails createDetail(
+				ResourceDiscoveryContext discoveryContext) {
+			return new DiscoveredResourceDetails(
+					discoveryContext.getResourceType(), name, name, version,
+					PluginConstants.ComponentType.VDB.DESCRIPTION,
+					pluginConfiguration.deepCopy(), null);
+		}
+	}
+
 	public Set<DiscoveredResourceDetails> discoverResources(
 			ResourceDiscoveryContext discoveryContext)
 			throws InvalidPluginConfigurationException, Exception {
 		Set<DiscoveredResourceDetails> discoveredResources = new HashSet<DiscoveredResourceDetails>();
-		ASConnection connection = ((PlatformComponent) discoveryContext
-				.getParentResourceComponent()).getASConnection();
+		PlatformComponent platform = (PlatformComponent) discoveryContext
+				.getParentResourceComponent();
+		ASConnection connection = platform.getASConnection();
 
+		// Always read from the server; this also refreshes the VDB cache
+		List<Map<String, Object>> list = platform.getVdbCache().getVdbs(connection, 0);
+		if (list == null) {
+			throw new Exception("Failed to read the deployed VDBs"); //$NON-NLS-1$
+		}
+
+		// Hidden preview VDBs and those left out by the filter are not
+		// discovered at all
+		int deployed = list.size();
+		list = platform.selectVdbs(list);
 		
-		Address addr = DmrUtil.getTeiidAddress();
-		Operation op = new Operation(Platform.Operations.LIST_VDBS, addr);
-		Result result = connection.execute(op);
-		ArrayList<LinkedHashMap> list = (ArrayList<LinkedHashMap>) result.getResult();
-		
-		PropertySimple displayPreviewVdbs = ((PlatformComponent)discoveryContext.getParentResourceComponent()).getResourceConfiguration().getSimple(PlatformComponent.DISPLAY_PREVIEW_VDBS);
+		Map<String, DiscoveredVdb> previous = platform.getDiscoveredVdbs();
+		Map<String, DiscoveredVdb> current = new HashMap<String, DiscoveredVdb>();
+		int unchanged = 0;
 		
 		//Iterate through VDBs
-		for (LinkedHashMap<String, Object> map : list) {
-
-			boolean skipVdb = false;
-			if (!displayPreviewVdbs.getBooleanValue()){
-				ArrayList<Map <String, Object>> properties = (ArrayList<Map <String, Object>>) map.get(VDBComponent.PROPERTIES);
-				if (properties != null) {
-					for (Map <String, Object> propertyMap : properties) {
-						String propertyName = (String) propertyMap.get(VDBComponent.PROPERTY_NAME);
-						if (!propertyName.equals("preview")) continue;
-						String propertyValue = (String) propertyMap.get(VDBComponent.PROPERTY_VALUE);
-						if (propertyValue.equals(Boolean.TRUE.toString())) skipVdb=true;
-						break;
-					}
-				}	
-			}
-				
-			//If this is a Preview VDB and displayPreviewVdbs is false, skip this VDB
-			if (skipVdb) continue;
-				
+		for (Map<String, Object> map : list) {
+
 			String vdbKey = (String) map.get(VDBComponent.VDBNAME);
-			String vdbName = vdbKey;
 			Integer vdbVersion = (Integer) map.get(VDBComponent.VERSION);
-			String vdbDescription = (String) map.get(VDBComponent.DESCRIPTION);
-			String vdbStatus = (String) map.get(VDBComponent.STATUS);
+			String key = VdbActivityIndex.getKey(vdbKey, vdbVersion);
+			int fingerprint = getFingerprint(map);
 			
-
-			/**
-			 * 
-			 * A discovered resource must have a unique key, that must stay the
-			 * same when the resource is discovered the next time
-			 */
-			DiscoveredResourceDetails detail = new DiscoveredResourceDetails(
-					discoveryContext.getResourceType(), // ResourceType
-					vdbKey, // Resource Key
-					vdbName, // Resource Name
-					vdbVersion.toString(), // Version
-					PluginConstants.ComponentType.VDB.DESCRIPTION, // Description
-					discoveryContext.getDefaultPluginConfiguration(), // Plugin Config
-					null // Process info from a process scan
-			);
-
-			// Get plugin config map for properties
-			Configuration configuration = detail.getPluginConfiguration();
-
-			configuration.put(new PropertySimple("name", vdbName));
-			configuration.put(new PropertySimple("version", vdbVersion));
-			configuration
-					.put(new PropertySimple("description", vdbDescription));
-			configuration.put(new PropertySimple("status", vdbStatus));
-
-			detail.setPluginConfiguration(configuration);
+			// The details only hold fields of the fingerprint, so an unchanged
+			// VDB is not read again
+			DiscoveredVdb discovered = previous.get(key);
+			if (discovered != null && discovered.fingerprint == fingerprint) {
+				unchanged++;
+			} else {
+				discovered = new DiscoveredVdb(fingerprint, vdbKey,
+						String.valueOf(vdbVersion), createPluginConfiguration(
+								discoveryContext, map));
+			}
+			current.put(key, discovered);
 
 			// Add to return values
-			discoveredResources.add(detail);
-			log.debug("Discovered Teiid VDB: " + vdbName);
+			discoveredResources.add(discovered.createDetail(discoveryContext));
 		}
+		
+		// VDBs no longer deployed are dropped with the previous state
+		platform.setDiscoveredVdbs(current);
+		log.debug("Discovered " + current.size() + " of " + deployed + " Teiid VDBs, " + unchanged + " unchanged"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
 
 		return discoveredResources;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Identifies the deployed state of a VDB version from the scalar fields of
+	 * its <code>list-vdbs</code> entry, its name, version, status, description
+	 * and connection type, and the number of its models, properties and data
+	 * roles. The nested entries are not walked. The <code>list-vdbs</code>
+	 * result has no hash of the deployment; a redeploy that keeps all of these
+	 * is taken as unchanged, which is safe as the discovered details hold
+	 * nothing else.
+	 */
+	static int getFingerprint(Map<String, Object> map) {
+		int hash = String.valueOf(map.get(VDBComponent.VDBNAME)).hashCode();
+		hash = 31 * hash + String.valueOf(map.get(VDBComponent.VERSION)).hashCode();
+		hash = 31 * hash + String.valueOf(map.get(VDBComponent.STATUS)).hashCode();
+		hash = 31 * hash + String.valueOf(map.get(VDBComponent.DESCRIPTION)).hashCode();
+		hash = 31 * hash + String.valueOf(map.get(VDBComponent.CONNECTIONTYPE)).hashCode();
+		hash = 31 * hash + getSize(map.get(VDBComponent.MODELS));
+		hash = 31 * hash + getSize(map.get(VDBComponent.PROPERTIES));
+		return 31 * hash + getSize(map.get(VDBComponent.DATA_POLICIES));
+	}
+
+	private static int getSize(Object list) {
+		return list instanceof List ? ((List<?>) list).size() : -1;
+	}
+
+	static boolean isPreview(Map<String, Object> map) {
+		List<Map <String, Object>> properties = (List<Map <String, Object>>) map.get(VDBComponent.PROPERTIES);
+		if (properties != null) {
+			for (Map <String, Object> propertyMap : properties) {
+				String propertyName = (String) propertyMap.get(VDBComponent.PROPERTY_NAME);
+				if (!"preview".equals(propertyName)) continue;
+				String propertyValue = (String) propertyMap.get(VDBComponent.PROPERTY_VALUE);
+				return Boolean.TRUE.toString().equals(propertyValue);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A discovered resource must have a unique key, that must stay the same
+	 * when the resource is discovered the next time; it is the VDB name, with
+	 * the version as the resource version.
+	 */
+	private Configuration createPluginConfiguration(
+			ResourceDiscoveryContext discoveryContext, Map<String, Object> map) {
+		String vdbName = (String) map.get(VDBComponent.VDBNAME);
+		Integer vdbVersion = (Integer) map.get(VDBComponent.VERSION);
+		String vdbDescription = (String) map.get(VDBComponent.DESCRIPTION);
+		String vdbStatus = (String) map.get(VDBComponent.STATUS);
+
+		// Get plugin config map for properties
+		Configuration configuration = discoveryContext.getDefaultPluginConfiguration().deepCopy();
+
+		configuration.put(new PropertySimple("name", vdbName));
+		configuration.put(new PropertySimple("version", vdbVersion));
+		configuration
+				.put(new PropertySimple("description", vdbDescription));
+		configuration.put(new PropertySimple("status", vdbStatus));
+
+		log.debug("Discovered Teiid VDB: " + vdbName);
+		return configuration;
+	}
+
+}
@@ -62,7 +62,9 @@ public interface PluginConstants {
 				public final static String GET_ENGINE_STATISTICS = "engine-statistics"; //$NON-NLS-1$
 				public final static String EXECUTE_QUERY = "execute-query"; //$NON-NLS-1$
 				public final static String KILL_REQUEST = "cancel-request"; //$NON-NLS-1$
+				public final static String KILL_REQUESTS = "cancelRequests"; //$NON-NLS-1$
 				public final static String KILL_SESSION = "terminate-session"; //$NON-NLS-1$
+				public final static String KILL_SESSIONS = "terminateSessions"; //$NON-NLS-1$
 				public final static String KILL_TRANSACTION = "terminate-transaction"; //$NON-NLS-1$
 				public final static String GET_PROPERTIES = "getProperties"; //$NON-NLS-1$
 				public final static String GET_REQUESTS = "list-requests"; //$NON-NLS-1$
@@ -89,6 +91,16 @@ public interface PluginConstants {
 				public final static String QUERY_COUNT = "queryCount"; //$NON-NLS-1$            
 				public final static String SESSION_COUNT = "sessionCount"; //$NON-NLS-1$
 				public final static String LONG_RUNNING_QUERIES = "longRunningQueries"; //$NON-NLS-1$     
+				public final static String NEW_REQUEST_RATE = "newRequestRate"; //$NON-NLS-1$
+				public final static String NEW_SESSION_RATE = "newSessionRate"; //$NON-NLS-1$
+				public final static String SKIPPED_METRICS = "skippedMetrics"; //$NON-NLS-1$
+				public final static String WORKER_POOL_SATURATION = "workerPoolSaturation"; //$NON-NLS-1$
+				public final static String WORKER_POOL_QUEUE_WAIT = "workerPoolQueueWait"; //$NON-NLS-1$
+				public final static String REQUEST_LATENCY_P50 = "requestLatencyP50"; //$NON-NLS-1$
+				public final static String REQUEST_LATENCY_P95 = "requestLatencyP95"; //$NON-NLS-1$
+				public final static String REQUEST_LATENCY_P99 = "requestLatencyP99"; //$NON-NLS-1$
+				public final static String REQUEST_LATENCY_MAX = "requestLatencyMax"; //$NON-NLS-1$
+				public final static String COMPLETED_REQUESTS = "completedRequests"; //$NON-NLS-1$
 				// TODO Do we still need this?
 				public final static String BUFFER_USAGE = "userBufferSpace"; //$NON-NLS-1$
 			}
@@ -106,12 +118,17 @@ public interface PluginConstants {
 				public final static String EXECUTE_QUERIES = "executeQuery"; //$NON-NLS-1$
 				public final static String GET_LONGRUNNINGQUERIES = "getLongRunningRequests"; //$NON-NLS-1$
 				public final static String KILL_REQUEST = "cancelRequest"; //$NON-NLS-1$
+				public final static String KILL_REQUESTS = "cancelRequests"; //$NON-NLS-1$
 				public final static String KILL_SESSION = "terminateSession"; //$NON-NLS-1$
+				public final static String KILL_SESSIONS = "terminateSessions"; //$NON-NLS-1$
 				public final static String GET_PROPERTIES = "getProperties"; //$NON-NLS-1$
 				public final static String GET_REQUESTS = "list-requests-per-vdb"; //$NON-NLS-1$
 				public final static String GET_SESSIONS = "getSessions"; //$NON-NLS-1$
 				public final static String GET_MATVIEWS = "getMaterializedViews"; //$NON-NLS-1$
 				public final static String RELOAD_MATVIEW = "reloadMaterializedView"; //$NON-NLS-1$
+				public final static String GET_MATVIEW_REFRESHES = "getMaterializedViewRefreshStatus"; //$NON-NLS-1$
+				public final static String CANCEL_MATVIEW_REFRESH = "cancelMaterializedViewRefresh"; //$NON-NLS-1$
+				public final static String REFRESH_MATVIEWS = "refreshMaterializedViews"; //$NON-NLS-1$
 				public final static String CHANGE_VDB_CONN_TYPE = "change-vdb-connection-type"; //$NON-NLS-1$
 				public final static String ASSIGN_DATASOURCE = "assign-datasource"; //$NON-NLS-1$
 
@@ -124,6 +141,14 @@ public interface PluginConstants {
 				public final static String ERROR_COUNT = "errorCount"; //$NON-NLS-1$
 				public final static String SESSION_COUNT = "sessionCount"; //$NON-NLS-1$
 				public final static String LONG_RUNNING_QUERIES = "longRunningQueries"; //$NON-NLS-1$     
+				public final static String REQUEST_LATENCY_P50 = "requestLatencyP50"; //$NON-NLS-1$
+				public final static String REQUEST_LATENCY_P95 = "requestLatencyP95"; //$NON-NLS-1$
+				public final static String REQUEST_LATENCY_P99 = "requestLatencyP99"; //$NON-NLS-1$
+				public final static String REQUEST_LATENCY_MAX = "requestLatencyMax"; //$NON-NLS-1$
+				public final static String COMPLETED_REQUESTS = "completedRequests"; //$NON-NLS-1$
+				public final static String MATVIEW_REFRESHES_RUNNING = "matViewRefreshesRunning"; //$NON-NLS-1$
+				public final static String MATVIEW_REFRESH_TIME = "matViewRefreshTime"; //$NON-NLS-1$
+				public final static String MATVIEW_ROWS_LOADED = "matViewRowsLoaded"; //$NON-NLS-1$
 
 			}
 
@@ -164,6 +189,9 @@ public interface PluginConstants {
 			}
 
 			public static interface Metrics {
+				public final static String SESSION_COUNT = "sessionCount"; //$NON-NLS-1$
+				public final static String QUERY_COUNT = "queryCount"; //$NON-NLS-1$
+				public final static String QUERY_RATE = "queryRate"; //$NON-NLS-1$
 			}
 
 		}
@@ -179,7 +207,9 @@ public interface PluginConstants {
 			}
 
 			public static interface Metrics {
-
+				public final static String MODEL_COUNT = "modelCount"; //$NON-NLS-1$
+				public final static String ACTIVE_SOURCE_REQUESTS = "activeSourceRequests"; //$NON-NLS-1$
+				public final static String SOURCE_REQUEST_RATE = "sourceRequestRate"; //$NON-NLS-1$
 			}
 
 		}
@@ -191,6 +221,12 @@ public interface PluginConstants {
 			public final static String NAME = "Model"; //$NON-NLS-1$
 			public final static String DESCRIPTION = "Model used to map to a source"; //$NON-NLS-1$
 
+			public static interface Metrics {
+				public final static String SOURCE_COUNT = "sourceCount"; //$NON-NLS-1$
+				public final static String ACTIVE_SOURCE_REQUESTS = "activeSourceRequests"; //$NON-NLS-1$
+				public final static String SOURCE_REQUEST_RATE = "sourceRequestRate"; //$NON-NLS-1$
+			}
+
 		}
 
 		public interface Connector {
@@ -287,6 +323,10 @@ public interface PluginConstants {
 			public final static String MATVIEW_SCHEMA = "schema"; //$NON-NLS-1$
 			public final static String MATVIEW_TABLE = "table"; //$NON-NLS-1$
 			public final static String INVALIDATE_MATVIEW = "invalidate"; //$NON-NLS-1$
+			public final static String MATVIEW_REFRESH_HANDLE = "handle"; //$NON-NLS-1$
+			public final static String MATVIEW_REFRESH_TIMEOUT = "timeout"; //$NON-NLS-1$
+			public final static String MATVIEW_LIST = "views"; //$NON-NLS-1$
+			public final static String PARALLEL_LIMIT = "parallelLimit"; //$NON-NLS-1$
 			public final static String CACHE_TYPE = "cacheType"; //$NON-NLS-1$
 			public final static String VDB_NAME = "vdb-name"; //$NON-NLS-1$
 			public final static String VDB_VERSION = "vdb-version"; //$NON-NLS-1$
@@ -295,6 +335,16 @@ public interface PluginConstants {
 			public final static String TIMEOUT_IN_MILLI = "timeout-in-milli"; //$NON-NLS-1$
 			public final static String TRANSACTIONID = "xid"; //$NON-NLS-1$
 			public final static String SESSION = "session"; //$NON-NLS-1$
+			public final static String USER_NAME_FILTER = "userName"; //$NON-NLS-1$
+			public final static String APPLICATION_NAME_FILTER = "applicationName"; //$NON-NLS-1$
+			public final static String MIN_AGE = "minAge"; //$NON-NLS-1$
+			public final static String OFFSET = "offset"; //$NON-NLS-1$
+			public final static String LIMIT = "limit"; //$NON-NLS-1$
+			public final static String SORT_BY = "sortBy"; //$NON-NLS-1$
+			public final static String SORT_DESCENDING = "sortDescending"; //$NON-NLS-1$
+			public final static String COMMAND_FILTER = "sqlContains"; //$NON-NLS-1$
+			public final static String CLIENT_HOST_FILTER = "clientHost"; //$NON-NLS-1$
+			public final static String MIN_IDLE_TIME = "minIdleTime"; //$NON-NLS-1$
 
 		}
 
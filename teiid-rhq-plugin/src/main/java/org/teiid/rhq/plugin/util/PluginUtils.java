@@ -25,6 +25,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Properties;
 
+import org.rhq.core.domain.configuration.Configuration;
 import org.rhq.core.domain.configuration.Property;
 import org.rhq.core.domain.configuration.PropertySimple;
 
@@ -42,4 +43,30 @@ public class PluginUtils {
 		
 		return collection;
 	}
+	
+	/*
+	 * Returns the boolean value of a simple property, or the default if the property is not set
+	 */
+	public static boolean getBooleanValue(Configuration configuration, String name, boolean defaultValue){
+		PropertySimple property = configuration == null ? null : configuration.getSimple(name);
+		if (property == null || property.getStringValue() == null) {
+			return defaultValue;
+		}
+		return property.getBooleanValue();
+	}
+	
+	/*
+	 * Returns the long value of a simple property, or the default if the property is not set
+	 */
+	public static long getLongValue(Configuration configuration, String name, long defaultValue){
+		PropertySimple property = configuration == null ? null : configuration.getSimple(name);
+		if (property == null || property.getStringValue() == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(property.getStringValue().trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
 }
@@ -0,0 +1,113 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.teiid.rhq.plugin.util.PluginConstants.Operation;
+
+@SuppressWarnings("nls")
+public class TestActivityQuery {
+
+	private List<Map<String, Object>> sessions(int count) {
+		List<Map<String, Object>> sessions = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < count; i++) {
+			Map<String, Object> session = new LinkedHashMap<String, Object>();
+			session.put(VdbActivityIndex.SESSION_ID, String.valueOf(i));
+			session.put(ActivityQuery.CREATED_TIME, Long.valueOf(1000 * i));
+			sessions.add(session);
+		}
+		// the server lists them in no particular order
+		Collections.reverse(sessions);
+		return sessions;
+	}
+
+	private List<Object> ids(List<Map<String, Object>> rows) {
+		List<Object> ids = new ArrayList<Object>();
+		for (Map<String, Object> row : rows) {
+			ids.add(row.get(VdbActivityIndex.SESSION_ID));
+		}
+		return ids;
+	}
+
+	private ActivityQuery query(Object... values) {
+		Map<String, Object> map = new HashMap<String, Object>();
+		for (int i = 0; i < values.length; i += 2) {
+			map.put((String) values[i], values[i + 1]);
+		}
+		return new ActivityQuery(map);
+	}
+
+	@Test public void testNoArguments() {
+		List<Map<String, Object>> rows = query().apply(sessions(5), null, ActivityQuery.CREATED_TIME);
+		assertEquals(5, rows.size());
+	}
+
+	@Test public void testSortedPage() {
+		ActivityQuery query = query(Operation.Value.SORT_BY, ActivityQuery.CREATED_TIME,
+				Operation.Value.OFFSET, 2, Operation.Value.LIMIT, 3);
+		assertEquals("[2, 3, 4]", ids(query.apply(sessions(10), null, ActivityQuery.CREATED_TIME)).toString());
+	}
+
+	@Test public void testSortedDescendingPage() {
+		ActivityQuery query = query(Operation.Value.SORT_BY, ActivityQuery.CREATED_TIME,
+				Operation.Value.SORT_DESCENDING, Boolean.TRUE, Operation.Value.LIMIT, 2);
+		assertEquals("[9, 8]", ids(query.apply(sessions(10), null, ActivityQuery.CREATED_TIME)).toString());
+	}
+
+	@Test public void testUnsortedPage() {
+		ActivityQuery query = query(Operation.Value.OFFSET, "1", Operation.Value.LIMIT, "2");
+		assertEquals("[8, 7]", ids(query.apply(sessions(10), null, ActivityQuery.CREATED_TIME)).toString());
+	}
+
+	@Test public void testOffsetPastEnd() {
+		ActivityQuery query = query(Operation.Value.SORT_BY, ActivityQuery.CREATED_TIME,
+				Operation.Value.OFFSET, 20, Operation.Value.LIMIT, 5);
+		assertTrue(query.apply(sessions(10), null, ActivityQuery.CREATED_TIME).isEmpty());
+	}
+
+	@Test public void testLargeOffsetAndLimit() {
+		ActivityQuery query = query(Operation.Value.SORT_BY, ActivityQuery.CREATED_TIME,
+				Operation.Value.OFFSET, 1, Operation.Value.LIMIT, Integer.MAX_VALUE);
+		assertEquals(9, query.apply(sessions(10), null, ActivityQuery.CREATED_TIME).size());
+
+		query = query(Operation.Value.OFFSET, Long.MAX_VALUE, Operation.Value.LIMIT, Long.MAX_VALUE);
+		assertTrue(query.apply(sessions(10), null, ActivityQuery.CREATED_TIME).isEmpty());
+	}
+
+	@Test public void testBusySessionsAreNotIdle() {
+		ActivityQuery query = query(Operation.Value.MIN_IDLE_TIME, 1);
+		assertTrue(query.hasIdleFilter());
+		query.setBusySessions(Collections.<Object> singleton("3"));
+		List<Object> ids = ids(query.apply(sessions(5), null, ActivityQuery.CREATED_TIME));
+		assertEquals("[4, 2, 1, 0]", ids.toString());
+	}
+
+}
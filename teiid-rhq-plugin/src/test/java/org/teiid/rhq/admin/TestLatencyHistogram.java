@@ -0,0 +1,99 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class TestLatencyHistogram {
+
+	@Test public void testLinearBuckets() {
+		for (long value = 0; value < 32; value++) {
+			assertEquals(value, LatencyHistogram.getIndex(value));
+			assertEquals(value, LatencyHistogram.getHighestValue((int) value));
+		}
+	}
+
+	@Test public void testBucketBoundaries() {
+		int last = LatencyHistogram.getIndex(Long.MAX_VALUE);
+		for (int index = 32; index < last; index++) {
+			long highest = LatencyHistogram.getHighestValue(index);
+			assertEquals(index, LatencyHistogram.getIndex(highest));
+			assertEquals(index + 1, LatencyHistogram.getIndex(highest + 1));
+		}
+		assertEquals(Long.MAX_VALUE, LatencyHistogram.getHighestValue(last));
+	}
+
+	@Test public void testRelativeError() {
+		for (long value = 1; value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+			long highest = LatencyHistogram.getHighestValue(LatencyHistogram.getIndex(value));
+			assertTrue(highest >= value);
+			assertTrue(String.valueOf(value), highest - value <= value / 16);
+		}
+	}
+
+	@Test public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		for (long value = 1; value <= 100; value++) {
+			histogram.record(value);
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(100, histogram.getMax());
+		assertEquals(50, histogram.getValueAtPercentile(50), 50 / 16);
+		assertEquals(95, histogram.getValueAtPercentile(95), 95 / 16);
+		assertEquals(100, histogram.getValueAtPercentile(100));
+	}
+
+	@Test public void testPercentileNeverAboveMax() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(1000);
+		assertEquals(1000, histogram.getValueAtPercentile(99));
+	}
+
+	@Test public void testNegativeValue() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+		assertEquals(1, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+
+	@Test public void testSubtract() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(10);
+		histogram.record(5000);
+		LatencyHistogram previous = histogram.copy();
+		histogram.record(20);
+		histogram.record(30);
+
+		LatencyHistogram difference = histogram.subtract(previous);
+		assertEquals(2, difference.getCount());
+		assertEquals(30, difference.getMax());
+		assertEquals(20, difference.getValueAtPercentile(50));
+		assertEquals(0, previous.subtract(previous).getCount());
+		// the copy is not changed by later records
+		assertEquals(2, previous.getCount());
+	}
+
+}
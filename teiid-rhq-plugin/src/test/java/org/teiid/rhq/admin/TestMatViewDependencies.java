@@ -0,0 +1,124 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class TestMatViewDependencies {
+
+	private List<Map<String, Object>> views = new ArrayList<Map<String, Object>>();
+
+	private void addView(String schema, String name, String body) {
+		Map<String, Object> view = new HashMap<String, Object>();
+		view.put(MatViewDependencies.SCHEMA_NAME, schema);
+		view.put(MatViewDependencies.NAME, name);
+		view.put(MatViewDependencies.BODY, body);
+		views.add(view);
+	}
+
+	private static Set<String> set(String... names) {
+		return new LinkedHashSet<String>(Arrays.asList(names));
+	}
+
+	@Test public void testQualifiedAndBareReferences() {
+		addView("s", "a", "select * from src.t");
+		addView("s", "b", "select * from a");
+		addView("t", "c", "SELECT * FROM \"s\".\"B\"");
+		Map<String, Set<String>> dependencies = MatViewDependencies.resolve(views,
+				Arrays.asList("s.a", "s.b", "t.c"));
+		assertEquals(set(), dependencies.get("s.a"));
+		assertEquals(set("s.a"), dependencies.get("s.b"));
+		assertEquals(set("s.b", "s.a"), dependencies.get("t.c"));
+	}
+
+	@Test public void testBareNameOfOtherSchemaIsNoReference() {
+		addView("s", "a", "select 1");
+		addView("t", "b", "select * from a");
+		addView("t", "c", "select * from x.a, ab, a_1");
+		Map<String, Set<String>> dependencies = MatViewDependencies.resolve(views,
+				Arrays.asList("s.a", "t.b", "t.c"));
+		assertEquals(set(), dependencies.get("t.b"));
+		assertEquals(set(), dependencies.get("t.c"));
+	}
+
+	@Test public void testThroughPlainViews() {
+		addView("s", "mat1", "select 1");
+		addView("s", "plain", "select * from mat1");
+		addView("s", "mat2", "select * from plain");
+		Map<String, Set<String>> dependencies = MatViewDependencies.resolve(views,
+				Arrays.asList("s.mat2", "s.mat1"));
+		assertEquals(set("s.mat1"), dependencies.get("s.mat2"));
+		assertEquals(set(), dependencies.get("s.mat1"));
+	}
+
+	@Test public void testOrder() {
+		Map<String, Set<String>> dependencies = new LinkedHashMap<String, Set<String>>();
+		dependencies.put("c", set("b"));
+		dependencies.put("b", set("a"));
+		dependencies.put("d", set());
+		dependencies.put("a", set());
+		assertEquals(Arrays.asList("d", "a", "b", "c"),
+				new ArrayList<String>(MatViewDependencies.order(dependencies).keySet()));
+	}
+
+	@Test public void testCyclesLast() {
+		addView("s", "a", "select * from b");
+		addView("s", "b", "select * from a");
+		addView("s", "c", "select 1");
+		Map<String, Set<String>> ordered = MatViewDependencies.order(MatViewDependencies.resolve(views,
+				Arrays.asList("s.a", "s.b", "s.c")));
+		assertEquals(Arrays.asList("s.c", "s.a", "s.b"), new ArrayList<String>(ordered.keySet()));
+		assertEquals(set("s.b"), ordered.get("s.a"));
+		assertEquals(set("s.a"), ordered.get("s.b"));
+	}
+
+	@Test public void testSequential() {
+		Map<String, Set<String>> dependencies = MatViewDependencies.sequential(Arrays.asList("a", "b", "c"));
+		assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<String>(dependencies.keySet()));
+		assertEquals(Collections.emptySet(), dependencies.get("a"));
+		assertEquals(set("a"), dependencies.get("b"));
+		assertEquals(set("b"), dependencies.get("c"));
+	}
+
+	@Test public void testContains() {
+		assertTrue(MatViewDependencies.contains("select * from a", "a", false));
+		assertTrue(MatViewDependencies.contains("a.x", "a.x", true));
+		assertFalse(MatViewDependencies.contains("select * from x.a", "a", false));
+		assertTrue(MatViewDependencies.contains("select * from x.a", "x.a", true));
+		assertFalse(MatViewDependencies.contains("select * from ab", "a", false));
+		assertFalse(MatViewDependencies.contains("select * from b_a", "a", false));
+	}
+
+}
@@ -0,0 +1,212 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.teiid.rhq.plugin.VDBComponent;
+import org.teiid.rhq.plugin.util.PluginConstants.Operation;
+
+@SuppressWarnings("nls")
+public class TestRequestLatencyTracker {
+
+	private List<Map<String, Object>> sessions = new ArrayList<Map<String, Object>>();
+	private List<Map<String, Object>> requests = new ArrayList<Map<String, Object>>();
+
+	private void addSession(String sessionId, String vdbName) {
+		Map<String, Object> session = new HashMap<String, Object>();
+		session.put(VdbActivityIndex.SESSION_ID, sessionId);
+		session.put(VDBComponent.VDBNAME, vdbName);
+		session.put(VDBComponent.VERSION, Integer.valueOf(1));
+		sessions.add(session);
+	}
+
+	private Map<String, Object> addRequest(String sessionId, long executionId, long startTime) {
+		Map<String, Object> request = new HashMap<String, Object>();
+		request.put(VdbActivityIndex.SESSION_ID, sessionId);
+		request.put(Operation.Value.REQUEST_ID, Long.valueOf(executionId));
+		request.put(RequestLatencyTracker.START_TIME, Long.valueOf(startTime));
+		requests.add(request);
+		return request;
+	}
+
+	private void update(RequestLatencyTracker tracker) {
+		tracker.update(new VdbActivityIndex(sessions, requests, null));
+	}
+
+	@Test public void testFirstReadHasNoInterval() {
+		RequestLatencyTracker tracker = new RequestLatencyTracker();
+		assertNull(tracker.getInterval(1));
+		assertNull(tracker.getInterval("a", "1", 1));
+		assertEquals(0, tracker.getInterval(2).getCount());
+	}
+
+	@Test public void testFinishedRequestIsRecorded() {
+		RequestLatencyTracker tracker = new RequestLatencyTracker();
+		tracker.getInterval(1);
+		addSession("s1", "a");
+		long start = System.currentTimeMillis() - 1000;
+		Map<String, Object> finished = addRequest("s1", 1, start);
+		addRequest("s1", 2, start);
+		update(tracker);
+		assertEquals(0, tracker.getInterval(2).getCount());
+
+		requests.remove(finished);
+		update(tracker);
+		LatencyHistogram interval = tracker.getInterval(3);
+		assertEquals(1, interval.getCount());
+		assertTrue(interval.getMax() >= 1000);
+		assertTrue(interval.getMax() < 60000);
+
+		// a finished request is evicted, and not counted again
+		update(tracker);
+		assertEquals(0, tracker.getInterval(4).getCount());
+	}
+
+	@Test public void testReadsOfOneCycleAgree() {
+		RequestLatencyTracker tracker = new RequestLatencyTracker();
+		tracker.getInterval(1);
+		addSession("s1", "a");
+		addRequest("s1", 1, System.currentTimeMillis());
+		update(tracker);
+		requests.clear();
+		update(tracker);
+		assertEquals(1, tracker.getInterval(2).getCount());
+		assertEquals(1, tracker.getInterval(2).getCount());
+		assertEquals(0, tracker.getInterval(3).getCount());
+	}
+
+	@Test public void testVdbIntervalsAcrossUpdates() {
+		RequestLatencyTracker tracker = new RequestLatencyTracker();
+		addSession("s1", "a");
+		addSession("s2", "b");
+		assertNull(tracker.getInterval("a", "1", 1));
+		assertNull(tracker.getInterval("b", "1", 1));
+		long now = System.currentTimeMillis();
+
+		// several index builds between two reads of a VDB lose nothing
+		addRequest("s1", 1, now);
+		addRequest("s2", 1, now);
+		update(tracker);
+		requests.clear();
+		update(tracker);
+		addRequest("s1", 2, now);
+		update(tracker);
+		requests.clear();
+		update(tracker);
+		assertEquals(2, tracker.getInterval("a", "1", 2).getCount());
+		assertEquals(1, tracker.getInterval("b", "1", 2).getCount());
+
+		// nor does a read count twice what an earlier read reported
+		update(tracker);
+		assertEquals(0, tracker.getInterval("a", "1", 3).getCount());
+		assertEquals(0, tracker.getInterval("b", "1", 3).getCount());
+	}
+
+	@Test public void testRehash() {
+		RequestLatencyTracker tracker = new RequestLatencyTracker();
+		tracker.getInterval(1);
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 500; i++) {
+			addSession("s" + i, "a");
+			for (int j = 0; j < 10; j++) {
+				addRequest("s" + i, j, now);
+			}
+		}
+		update(tracker);
+		// the same requests again are not added twice
+		update(tracker);
+		assertEquals(0, tracker.getInterval(2).getCount());
+
+		// half of them finish, the table shrinks and still finds the others
+		List<Map<String, Object>> live = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < requests.size(); i += 2) {
+			live.add(requests.get(i));
+		}
+		requests = live;
+		update(tracker);
+		assertEquals(2500, tracker.getInterval(3).getCount());
+		update(tracker);
+		assertEquals(0, tracker.getInterval(4).getCount());
+		requests.clear();
+		update(tracker);
+		assertEquals(2500, tracker.getInterval(5).getCount());
+	}
+
+	@Test public void testFailedListFinishesNothing() {
+		RequestLatencyTracker tracker = new RequestLatencyTracker();
+		tracker.getInterval(1);
+		addSession("s1", "a");
+		addRequest("s1", 1, System.currentTimeMillis());
+		update(tracker);
+
+		// list-requests failed, then an empty session list
+		tracker.update(new VdbActivityIndex(sessions, null, null));
+		assertEquals(0, tracker.getInterval(2).getCount());
+		tracker.update(new VdbActivityIndex(null, requests, null));
+		assertEquals(0, tracker.getInterval(3).getCount());
+
+		update(tracker);
+		assertEquals(0, tracker.getInterval(4).getCount());
+		requests.clear();
+		update(tracker);
+		assertEquals(1, tracker.getInterval(5).getCount());
+	}
+
+	@Test public void testOlderIndexIsIgnored() throws Exception {
+		RequestLatencyTracker tracker = new RequestLatencyTracker();
+		tracker.getInterval(1);
+		addSession("s1", "a");
+		VdbActivityIndex older = new VdbActivityIndex(sessions,
+				new ArrayList<Map<String, Object>>(), null);
+		Thread.sleep(5);
+		addRequest("s1", 1, System.currentTimeMillis());
+		update(tracker);
+
+		// built before the request started, applied after
+		tracker.update(older);
+		assertEquals(0, tracker.getInterval(2).getCount());
+		update(tracker);
+		requests.clear();
+		update(tracker);
+		assertEquals(1, tracker.getInterval(3).getCount());
+	}
+
+	@Test public void testClear() {
+		RequestLatencyTracker tracker = new RequestLatencyTracker();
+		addSession("s1", "a");
+		addRequest("s1", 1, System.currentTimeMillis());
+		update(tracker);
+		tracker.getInterval(1);
+		tracker.clear();
+		requests.clear();
+		update(tracker);
+		assertNull(tracker.getInterval(2));
+	}
+
+}
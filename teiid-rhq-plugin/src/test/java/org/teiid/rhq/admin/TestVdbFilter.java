@@ -0,0 +1,112 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.teiid.rhq.admin;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+import org.teiid.rhq.plugin.VDBComponent;
+
+@SuppressWarnings("nls")
+public class TestVdbFilter {
+
+	private List<Map<String, Object>> vdbs = new ArrayList<Map<String, Object>>();
+
+	private void addVdb(String name, Object version) {
+		Map<String, Object> vdb = new HashMap<String, Object>();
+		vdb.put(VDBComponent.VDBNAME, name);
+		vdb.put(VDBComponent.VERSION, version);
+		vdbs.add(vdb);
+	}
+
+	private static List<String> keys(List<Map<String, Object>> vdbs) {
+		List<String> keys = new ArrayList<String>();
+		for (Map<String, Object> vdb : vdbs) {
+			keys.add(VdbActivityIndex.getKey(vdb.get(VDBComponent.VDBNAME), vdb.get(VDBComponent.VERSION)));
+		}
+		return keys;
+	}
+
+	@Test public void testAll() {
+		addVdb("a", 1);
+		assertTrue(VdbFilter.ALL.isEmpty());
+		assertSame(vdbs, VdbFilter.ALL.filter(vdbs));
+		assertTrue(new VdbFilter(" ", "", 0).isEmpty());
+	}
+
+	@Test public void testPatternsMatchWholeName() {
+		VdbFilter filter = new VdbFilter("sales.*", ".*_test", 0);
+		assertTrue(filter.accepts("sales"));
+		assertTrue(filter.accepts("salesEU"));
+		assertFalse(filter.accepts("presales"));
+		assertFalse(filter.accepts("sales_test"));
+		assertTrue(filter.accepts("sales_test2"));
+	}
+
+	@Test public void testFilterKeepsOrder() {
+		addVdb("b", 1);
+		addVdb("a", 1);
+		addVdb("c", 1);
+		assertEquals(keys(vdbs).subList(0, 2), keys(new VdbFilter("a|b", null, 0).filter(vdbs)));
+	}
+
+	@Test public void testLatestVersions() {
+		addVdb("a", 1);
+		addVdb("a", 3);
+		addVdb("b", "7");
+		addVdb("a", 2);
+		addVdb("x", 1);
+		List<String> selected = keys(new VdbFilter(null, "x", 2).filter(vdbs));
+		assertEquals(3, selected.size());
+		assertTrue(selected.contains("a.3"));
+		assertTrue(selected.contains("a.2"));
+		assertTrue(selected.contains("b.7"));
+	}
+
+	@Test public void testExcludedVersionsDoNotCount() {
+		addVdb("a", 1);
+		addVdb("a", 2);
+		addVdb("ab", 5);
+		List<String> selected = keys(new VdbFilter("a", null, 1).filter(vdbs));
+		assertEquals(1, selected.size());
+		assertEquals("a.2", selected.get(0));
+	}
+
+	@Test(expected = PatternSyntaxException.class) public void testInvalidPattern() {
+		new VdbFilter("(", null, 0);
+	}
+
+	@Test public void testEquals() {
+		assertEquals(new VdbFilter("a", "b", 2), new VdbFilter(" a ", "b", 2));
+		assertEquals(new VdbFilter("a", "b", 2).hashCode(), new VdbFilter("a", "b", 2).hashCode());
+		assertFalse(new VdbFilter("a", "b", 2).equals(new VdbFilter("a", "b", 1)));
+		assertFalse(new VdbFilter("a", null, 0).equals(new VdbFilter(null, "a", 0)));
+		assertEquals(VdbFilter.ALL, new VdbFilter(null, null, 0));
+	}
+
+}